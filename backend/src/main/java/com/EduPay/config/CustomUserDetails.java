@@ -10,15 +10,41 @@ import java.util.Collections;
 
 /**
  * Custom implementation of Spring Security's UserDetails interface.
- * Wraps our application's User entity to provide user details to Spring Security,
- * including the user's database ID and role.
+ * Provides user details to Spring Security, including the user's database ID,
+ * role and linked student.
+ *
+ * Built either from the User entity (password login) or straight from the
+ * claims of a verified JWT, in which case no user query is made.
  */
 public class CustomUserDetails implements UserDetails {
 
-    private final User user; // Our application's User entity
+    private final Long id;
+    private final String username;
+    private final String password; // null for token-authenticated principals
+    private final String role;
+    private final String status;
+    private final Long studentPk;  // students.id of the linked student, null for non-students
 
     public CustomUserDetails(User user) {
-        this.user = user;
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.password = user.getPassword();
+        this.role = user.getRole();
+        this.status = user.getStatus();
+        this.studentPk = null;
+    }
+
+    /**
+     * Principal for a verified token; the token is only issued to active users
+     * and revoked on status changes, so it is treated as enabled.
+     */
+    public CustomUserDetails(Long id, String username, String role, Long studentPk) {
+        this.id = id;
+        this.username = username;
+        this.password = null;
+        this.role = role;
+        this.status = "ACTIVE";
+        this.studentPk = studentPk;
     }
 
     /**
@@ -26,7 +52,7 @@ public class CustomUserDetails implements UserDetails {
      * @return The user's ID.
      */
     public Long getId() {
-        return user.getId();
+        return id;
     }
 
     /**
@@ -34,26 +60,34 @@ public class CustomUserDetails implements UserDetails {
      * @return The user's role.
      */
     public String getRole() {
-        return user.getRole();
+        return role;
+    }
+
+    /**
+     * Returns students.id of the student linked to this user, if carried by the token.
+     * @return The linked student's primary key, or null.
+     */
+    public Long getStudentPk() {
+        return studentPk;
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         // Converts the user's role string to a Spring Security GrantedAuthority.
         // Spring Security typically expects roles to be prefixed with "ROLE_", e.g., "ROLE_ADMIN".
-        return Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole()));
+        return Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role));
     }
 
     @Override
     public String getPassword() {
         // Returns the hashed password from the User entity.
-        return user.getPassword();
+        return password;
     }
 
     @Override
     public String getUsername() {
         // Returns the username (student name or admin username) from the User entity.
-        return user.getUsername();
+        return username;
     }
 
     @Override
@@ -76,6 +110,6 @@ public class CustomUserDetails implements UserDetails {
 
     @Override
     public boolean isEnabled() {
-        return "ACTIVE".equalsIgnoreCase(user.getStatus());
+        return "ACTIVE".equalsIgnoreCase(status);
     }
 }
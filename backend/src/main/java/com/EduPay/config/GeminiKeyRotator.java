@@ -1,51 +1,304 @@
 package com.EduPay.config;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Round-robin rotator for multiple Gemini API keys.
- * Cycles through all configured keys to distribute load
- * and avoid per-key rate limits during development.
+ * Rate-aware scheduler for multiple Gemini API keys.
+ *
+ * Every key has its own token bucket (requests-per-minute-per-key, bursts of
+ * burst-per-key), kept as a single AtomicLong "theoretical arrival time"
+ * (GCRA), so acquiring is a lock-free CAS. A lease is handed out on the
+ * healthy key with the most remaining capacity.
+ *
+ * Callers report the outcome on the lease: a 429 puts the key in cooldown for
+ * the gateway's Retry-After (or cooldown-429-ms), 5xx errors back off
+ * exponentially from cooldown-5xx-ms, and a rejected key (401 / 403 / invalid
+ * key) is taken out for cooldown-invalid-key-ms; a success clears the failure streak.
+ *
+ * {@link #acquire(Duration)} never blocks the caller: when no key has capacity
+ * the future is completed from a scheduler thread as soon as one frees up, or
+ * fails once the timeout passes.
  */
 @Component
 public class GeminiKeyRotator {
 
     private static final Logger log = LoggerFactory.getLogger(GeminiKeyRotator.class);
 
-    private final List<String> apiKeys;
-    private final AtomicInteger index = new AtomicInteger(0);
+    private static final long MAX_SERVER_ERROR_COOLDOWN_NANOS = TimeUnit.MINUTES.toNanos(2);
 
-    public GeminiKeyRotator(@Value("${edupay.ai.api-keys}") String rawKeys) {
-        this.apiKeys = List.of(rawKeys.split(","))
+    private final List<KeyState> keys;
+    private final long intervalNanos;       // one request's worth of bucket time
+    private final long burstToleranceNanos; // how far ahead of "now" a key may be booked
+    private final long rateLimitCooldownNanos;
+    private final long serverErrorCooldownNanos;
+    private final long invalidKeyCooldownNanos;
+    private final ScheduledExecutorService scheduler;
+
+    public GeminiKeyRotator(@Value("${edupay.ai.api-keys}") String rawKeys,
+                            @Value("${edupay.ai.requests-per-minute-per-key:15}") int requestsPerMinute,
+                            @Value("${edupay.ai.burst-per-key:5}") int burst,
+                            @Value("${edupay.ai.cooldown-429-ms:60000}") long rateLimitCooldownMs,
+                            @Value("${edupay.ai.cooldown-5xx-ms:5000}") long serverErrorCooldownMs,
+                            @Value("${edupay.ai.cooldown-invalid-key-ms:3600000}") long invalidKeyCooldownMs) {
+        List<String> apiKeys = List.of(rawKeys.split(","))
                 .stream()
                 .map(String::trim)
                 .filter(k -> !k.isBlank())
                 .toList();
 
-        if (this.apiKeys.isEmpty()) {
+        if (apiKeys.isEmpty()) {
             throw new IllegalStateException("No Gemini API keys configured under 'edupay.ai.api-keys'");
         }
-        log.info("🔑 GeminiKeyRotator initialized with {} key(s).", this.apiKeys.size());
+        this.keys = apiKeys.stream().map(KeyState::new).toList();
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+        this.burstToleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        this.rateLimitCooldownNanos = TimeUnit.MILLISECONDS.toNanos(rateLimitCooldownMs);
+        this.serverErrorCooldownNanos = TimeUnit.MILLISECONDS.toNanos(serverErrorCooldownMs);
+        this.invalidKeyCooldownNanos = TimeUnit.MILLISECONDS.toNanos(invalidKeyCooldownMs);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("gemini-key-scheduler").daemon(true).factory());
+        log.info("🔑 GeminiKeyRotator initialized with {} key(s), {} req/min each (burst {}).",
+                keys.size(), requestsPerMinute, burst);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
     }
 
+    // ─────────────────────────────────────────────────────────────────────────
+    // Acquire
+    // ─────────────────────────────────────────────────────────────────────────
+
     /**
-     * Returns the next API key in round-robin order.
-     * Thread-safe — safe for concurrent requests.
+     * Takes one request's capacity on the best key right now, or returns null
+     * if every key is exhausted or cooling down.
      */
-    public String nextKey() {
-        int i = index.getAndUpdate(current -> (current + 1) % apiKeys.size());
-        String key = apiKeys.get(i);
-        log.debug("🔄 Using API key index {} (****{})", i, key.substring(Math.max(0, key.length() - 6)));
-        return key;
+    public Lease tryAcquire() {
+        for (int attempt = 0; attempt < keys.size() * 2; attempt++) {
+            long now = System.nanoTime();
+            KeyState best = null;
+            long bestHeadroom = Long.MIN_VALUE;
+            for (KeyState key : keys) {
+                long headroom = key.headroom(now);
+                if (headroom > bestHeadroom) {
+                    bestHeadroom = headroom;
+                    best = key;
+                }
+            }
+            if (best == null || bestHeadroom < 0) {
+                return null;
+            }
+            if (best.tryTake(now)) {
+                return new Lease(best);
+            }
+            // Lost the race for that key's last slot: re-rank and try again
+        }
+        return null;
+    }
+
+    /**
+     * Lease on the first key with capacity. Completes immediately when one is
+     * available; otherwise waits (without holding the caller's thread) for the
+     * earliest key to free up. Fails with a RuntimeException after {@code timeout}.
+     */
+    public CompletableFuture<Lease> acquire(Duration timeout) {
+        CompletableFuture<Lease> future = new CompletableFuture<>();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        attemptAcquire(future, deadline);
+        return future;
+    }
+
+    private void attemptAcquire(CompletableFuture<Lease> future, long deadline) {
+        if (future.isDone()) {
+            return;
+        }
+        Lease lease = tryAcquire();
+        if (lease != null) {
+            if (!future.complete(lease)) {
+                lease.release(); // caller gave up meanwhile
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        if (now >= deadline) {
+            future.completeExceptionally(new RuntimeException(
+                    "All Gemini API keys are rate limited; no capacity within the acquire timeout."));
+            return;
+        }
+        long wait = Math.min(earliestAvailableIn(now), deadline - now);
+        scheduler.schedule(() -> attemptAcquire(future, deadline), Math.max(wait, 1_000_000), TimeUnit.NANOSECONDS);
+    }
+
+    private long earliestAvailableIn(long now) {
+        long earliest = Long.MAX_VALUE;
+        for (KeyState key : keys) {
+            earliest = Math.min(earliest, key.availableIn(now));
+        }
+        return earliest;
     }
 
     public int keyCount() {
-        return apiKeys.size();
+        return keys.size();
+    }
+
+    /**
+     * Per-key scheduling state: capacity left, cooldown and outcome counters.
+     */
+    public List<Map<String, Object>> stats() {
+        long now = System.nanoTime();
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (KeyState key : keys) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("key", key.masked());
+            s.put("availableRequests", Math.max(0, key.headroom(now) / intervalNanos + 1));
+            s.put("cooldownMs", Math.max(0, key.cooldownUntil.get() - now) / 1_000_000);
+            s.put("successes", key.successes.get());
+            s.put("rateLimited", key.rateLimited.get());
+            s.put("serverErrors", key.serverErrors.get());
+            s.put("keyRejected", key.keyRejected.get());
+            stats.add(s);
+        }
+        return stats;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Lease
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * One request's worth of capacity on a key. Report exactly one outcome.
+     */
+    public final class Lease {
+        private final KeyState key;
+
+        private Lease(KeyState key) {
+            this.key = key;
+        }
+
+        public String apiKey() {
+            return key.apiKey;
+        }
+
+        public String maskedKey() {
+            return key.masked();
+        }
+
+        public void success() {
+            key.successes.incrementAndGet();
+            key.failureStreak.set(0);
+        }
+
+        /** 429: the key sits out {@code retryAfter}, or the configured cooldown when null. */
+        public void rateLimited(Duration retryAfter) {
+            key.rateLimited.incrementAndGet();
+            long cooldown = retryAfter != null ? retryAfter.toNanos() : rateLimitCooldownNanos;
+            key.coolDown(cooldown);
+            log.warn("⏳ Gemini key ****{} rate limited; cooling down {} ms", key.masked(), cooldown / 1_000_000);
+        }
+
+        /** 5xx / transport failure: exponential cooldown on consecutive failures. */
+        public void serverError() {
+            key.serverErrors.incrementAndGet();
+            int streak = Math.min(key.failureStreak.incrementAndGet(), 10);
+            long cooldown = Math.min(serverErrorCooldownNanos << (streak - 1), MAX_SERVER_ERROR_COOLDOWN_NANOS);
+            key.coolDown(cooldown);
+            log.warn("⚠️ Gemini key ****{} server error #{}; cooling down {} ms",
+                    key.masked(), streak, cooldown / 1_000_000);
+        }
+
+        /**
+         * 401 / 403 / invalid-key 400: the key itself is bad or revoked, so it
+         * sits out cooldown-invalid-key-ms instead of being picked again.
+         */
+        public void keyRejected(int status) {
+            key.keyRejected.incrementAndGet();
+            key.coolDown(invalidKeyCooldownNanos);
+            log.error("🚫 Gemini key ****{} rejected (HTTP {}); disabled for {} ms",
+                    key.masked(), status, invalidKeyCooldownNanos / 1_000_000);
+        }
+
+        /** Returns the unused capacity (request was never sent). */
+        void release() {
+            key.giveBack(intervalNanos);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Per-key state
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private final class KeyState {
+        final String apiKey;
+        final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        final AtomicLong cooldownUntil = new AtomicLong(System.nanoTime()); // nanoTime may be negative: never MIN_VALUE
+        final AtomicInteger failureStreak = new AtomicInteger();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong rateLimited = new AtomicLong();
+        final AtomicLong serverErrors = new AtomicLong();
+        final AtomicLong keyRejected = new AtomicLong();
+
+        KeyState(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        /** Bucket time left before the key is exhausted; negative when exhausted or cooling down. */
+        long headroom(long now) {
+            if (cooldownUntil.get() - now > 0) {
+                return -1;
+            }
+            long tat = Math.max(theoreticalArrival.get(), now);
+            return burstToleranceNanos - (tat - now);
+        }
+
+        /** Nanos until this key can take a request again. */
+        long availableIn(long now) {
+            long cooling = cooldownUntil.get() - now;
+            long tat = Math.max(theoreticalArrival.get(), now);
+            long exhausted = (tat - now) - burstToleranceNanos;
+            return Math.max(0, Math.max(cooling, exhausted));
+        }
+
+        boolean tryTake(long now) {
+            while (true) {
+                long current = theoreticalArrival.get();
+                long tat = Math.max(current, now);
+                if (tat - now > burstToleranceNanos) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(current, tat + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        void giveBack(long nanos) {
+            theoreticalArrival.addAndGet(-nanos);
+        }
+
+        void coolDown(long nanos) {
+            long until = System.nanoTime() + nanos;
+            cooldownUntil.accumulateAndGet(until, Math::max);
+        }
+
+        String masked() {
+            return apiKey.substring(Math.max(0, apiKey.length() - 6));
+        }
     }
 }
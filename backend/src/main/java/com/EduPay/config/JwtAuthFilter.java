@@ -1,14 +1,16 @@
 package com.EduPay.config;
 
 import com.EduPay.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -16,15 +18,32 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 
 
+/**
+ * Bearer-token authentication.
+ *
+ * The principal is stateless: user id, role and linked student come from the
+ * token's claims, and revocation is checked against the in-memory
+ * TokenRevocationRegistry, so authentication makes no database query.
+ *
+ * Fast path: the token's principal is found in JwtPrincipalCache — no JWT parse;
+ * the cached token version is still checked against the registry on every hit.
+ * Slow path: the token is parsed and verified once into Claims, its version is
+ * checked, and the principal is cached with that version for the next request.
+ */
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthFilter.class);
+
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService; // Spring Security's UserDetailsService
+    private final JwtPrincipalCache principalCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
 
-    public JwtAuthFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthFilter(JwtUtil jwtUtil, JwtPrincipalCache principalCache,
+                         TokenRevocationRegistry tokenRevocationRegistry) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
     }
 
     @Override
@@ -33,33 +52,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
-
-        // Check if Authorization header exists and starts with "Bearer "
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7); // Extract the token (remove "Bearer ")
-            try {
-                username = jwtUtil.extractUsername(jwt); // Extract username from token
-            } catch (Exception e) {
-                // Log token extraction errors (e.g., expired, malformed token)
-                System.err.println("Error extracting username from JWT: " + e.getMessage());
-            }
-        }
+        // Check if Authorization header exists and starts with "Bearer ", and nothing is authenticated yet
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String jwt = authorizationHeader.substring(7); // Extract the token (remove "Bearer ")
 
-        // If username is extracted and no authentication is currently set in SecurityContext
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = null;
-            try {
-                // Load user details by username (this will also check if user exists)
-                userDetails = this.userDetailsService.loadUserByUsername(username);
-            } catch (Exception e) {
-                System.err.println("Error loading user details: " + e.getMessage());
-            }
+            JwtPrincipalCache.Entry cached = principalCache.get(jwt);
+            UserDetails userDetails = cached != null ? currentOrEvict(jwt, cached) : authenticate(jwt);
 
-
-            // Validate the token
-            if (userDetails != null && jwtUtil.validateToken(jwt, userDetails.getUsername())) {
+            if (userDetails != null) {
                 // Create an authentication token
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
@@ -73,4 +74,43 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         // Continue the filter chain
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Fast path: the cached principal, unless the user's tokens were revoked
+     * after it was cached (e.g. between the slow path's check and its put).
+     */
+    private UserDetails currentOrEvict(String jwt, JwtPrincipalCache.Entry cached) {
+        if (tokenRevocationRegistry.isCurrent(cached.principal().getId(), cached.tokenVersion())) {
+            return cached.principal();
+        }
+        principalCache.remove(jwt);
+        log.debug("Rejected cached JWT for {}: revoked", cached.principal().getUsername());
+        return null;
+    }
+
+    /**
+     * Slow path: verifies the token (signature + expiry, one parse), builds the
+     * principal from its claims and caches it. Returns null if the token is not
+     * valid, predates the identity claims, or was revoked.
+     */
+    private UserDetails authenticate(String jwt) {
+        Claims claims;
+        try {
+            claims = jwtUtil.parseClaims(jwt);
+        } catch (Exception e) {
+            // Expired, malformed or tampered token
+            log.debug("Rejected JWT: {}", e.getMessage());
+            return null;
+        }
+
+        CustomUserDetails userDetails = jwtUtil.toPrincipal(claims);
+        int tokenVersion = jwtUtil.extractTokenVersion(claims);
+        if (userDetails == null || !tokenRevocationRegistry.isCurrent(userDetails.getId(), tokenVersion)) {
+            log.debug("Rejected JWT for {}: missing identity claims or revoked", claims.getSubject());
+            return null;
+        }
+
+        principalCache.put(jwt, userDetails, tokenVersion, claims.getExpiration());
+        return userDetails;
+    }
 }
@@ -0,0 +1,100 @@
+package com.EduPay.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authenticated principals keyed by the SHA-256 of the bearer token.
+ *
+ * A hit means this exact token was already verified (signature + expiry,
+ * revocation version) and its principal built from the claims, so
+ * JwtAuthFilter can skip the JWT parse and signature check. Entries live for
+ * at most ttl-seconds and never past the token's own expiry; the map is
+ * bounded by max-entries (expired entries are swept first, then arbitrary
+ * ones).
+ *
+ * Each entry keeps the token's version, and JwtAuthFilter re-checks it against
+ * TokenRevocationRegistry on every hit. A revocation published between the
+ * slow path's version check and its put therefore still rejects the token.
+ * TokenRevocationRegistry also calls {@link #invalidateUser(String)} to free
+ * the revoked entries early.
+ */
+@Component
+public class JwtPrincipalCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    public JwtPrincipalCache(@Value("${edupay.auth.principal-cache-ttl-seconds:300}") long ttlSeconds,
+                             @Value("${edupay.auth.principal-cache-max-entries:10000}") int maxEntries) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+    }
+
+    /** Cached principal and token version, or null on a miss or an expired entry. */
+    public Entry get(String token) {
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /** Caches a verified principal and its token version until min(now + ttl, token expiry). */
+    public void put(String token, CustomUserDetails principal, int tokenVersion, Date tokenExpiration) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(now + ttlMillis, tokenExpiration.getTime());
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evict(now);
+        }
+        entries.put(hash(token), new Entry(principal, tokenVersion, expiresAt));
+    }
+
+    /** Drops one token (found revoked on a cache hit). */
+    public void remove(String token) {
+        entries.remove(hash(token));
+    }
+
+    /** Drops every cached token of the user (role / status / password / username change, deletion). */
+    public void invalidateUser(String username) {
+        entries.values().removeIf(entry -> entry.principal().getUsername().equals(username));
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e); // mandated by every JRE
+        }
+    }
+
+    public record Entry(CustomUserDetails principal, int tokenVersion, long expiresAt) {}
+}
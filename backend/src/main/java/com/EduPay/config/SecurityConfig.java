@@ -1,5 +1,6 @@
 package com.EduPay.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -66,6 +67,8 @@ public class SecurityConfig {
         http
                 .csrf(csrf -> csrf.disable()) // Disable CSRF for stateless REST APIs
                 .authorizeHttpRequests(authorize -> authorize
+                        // Async dispatches (e.g. the AI chat's CompletableFuture) were authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         // Allow public access to authentication endpoints
                         .requestMatchers("/api/auth/**").permitAll()
                         // Allow WebSocket handshake
@@ -75,10 +78,11 @@ public class SecurityConfig {
                         .requestMatchers("/api/users/**").hasRole("ADMIN")
 
                         // Fee Assignment & Late Charges (Admin only)
-                        .requestMatchers("/api/fees/assign").hasRole("ADMIN")
+                        .requestMatchers("/api/fees/assign/**").hasRole("ADMIN")
                         .requestMatchers("/api/fees/apply-late-charge").hasRole("ADMIN")
 
                         // Dashboard (Admin, Analyst, Viewer)
+                        .requestMatchers("/api/dashboard/summary/refresh", "/api/dashboard/rollups/**").hasRole("ADMIN")
                         .requestMatchers("/api/dashboard/**").hasAnyRole("ADMIN", "ANALYST", "VIEWER")
                         
                         // Financial Records
@@ -90,9 +94,16 @@ public class SecurityConfig {
                         // Notification endpoints — authenticated users
                         .requestMatchers("/api/notifications/**").authenticated()
                         // Announcements: broadcast = admin only, /my = any authenticated
-                        .requestMatchers("/api/announcements/broadcast").hasRole("ADMIN")
+                        .requestMatchers("/api/announcements/broadcast/**").hasRole("ADMIN")
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/announcements/my").authenticated()
                         .requestMatchers("/api/announcements/**").hasAnyRole("ADMIN", "ANALYST", "VIEWER")
+                        // Payment callback pipeline metrics (Admin only)
+                        .requestMatchers("/api/payments/callback-metrics").hasRole("ADMIN")
+                        // Payment order reconciliation (Admin only)
+                        .requestMatchers("/api/payments/reconciliation").hasRole("ADMIN")
+                        // Fake gateway driver, local / test profiles only (Admin only: it credits fees)
+                        .requestMatchers("/api/payments/fake-gateway/**").hasRole("ADMIN")
+
                         // Require ADMIN role for admin-specific endpoints
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         // Require STUDENT role for student-specific endpoints
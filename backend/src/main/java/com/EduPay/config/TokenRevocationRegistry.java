@@ -0,0 +1,91 @@
+package com.EduPay.config;
+
+import com.EduPay.model.User;
+import com.EduPay.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Current token version per user, checked by JwtAuthFilter against the "ver"
+ * claim instead of loading the user on every request.
+ *
+ * Only users whose tokens were ever revoked are held (version > 0; everyone
+ * else implicitly has version 0), so the map stays small. It is seeded from
+ * users.token_version at startup; {@link #revoke(User)} bumps the version on
+ * the entity (the caller saves it) and publishes it once the transaction
+ * commits, together with dropping the user's cached principals.
+ */
+@Component
+public class TokenRevocationRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationRegistry.class);
+
+    private static final int DELETED = Integer.MAX_VALUE; // no token version can match a deleted user
+
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+    private final UserRepository userRepository;
+    private final JwtPrincipalCache principalCache;
+
+    public TokenRevocationRegistry(UserRepository userRepository, JwtPrincipalCache principalCache) {
+        this.userRepository = userRepository;
+        this.principalCache = principalCache;
+    }
+
+    @PostConstruct
+    void load() {
+        for (Object[] row : userRepository.findRevokedTokenVersions()) {
+            versions.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+        }
+        log.info("🔐 Token revocation registry loaded ({} users with revoked tokens)", versions.size());
+    }
+
+    /** True if a token carrying {@code tokenVersion} is still valid for the user. */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return versions.getOrDefault(userId, 0) == tokenVersion;
+    }
+
+    /**
+     * Invalidates every token issued to the user so far (role / status / credential change).
+     * Increments user.tokenVersion — the caller persists the user.
+     */
+    public void revoke(User user) {
+        int version = (user.getTokenVersion() != null ? user.getTokenVersion() : 0) + 1;
+        user.setTokenVersion(version);
+        Long userId = user.getId();
+        String username = user.getUsername();
+        afterCommit(() -> {
+            versions.merge(userId, version, Math::max);
+            principalCache.invalidateUser(username);
+        });
+    }
+
+    /** Invalidates every token of a user that is being deleted. */
+    public void revokeDeleted(User user) {
+        Long userId = user.getId();
+        String username = user.getUsername();
+        afterCommit(() -> {
+            versions.put(userId, DELETED);
+            principalCache.invalidateUser(username);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -14,6 +14,36 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    /**
+     * Shared audience topics: one frame reaches every subscriber, so a school-wide
+     * or class-wide announcement costs one broker send regardless of enrollment.
+     * Frames carry no per-user state: announcement read state lives in
+     * announcement_reads plus each user's read cursor (announcement_read_cursors),
+     * personal notifications keep Notification.isRead. Clients reconcile against
+     * GET /api/notifications when they receive an audience frame.
+     *
+     * - /topic/announcements/all            → every student
+     * - /topic/announcements/class/{std}    → students of one standard
+     * - /topic/notifications/{userId}       → personal notifications (unchanged)
+     * - /topic/unread/{userId}              → { "count": n } whenever the user's unread count changes
+     */
+    public static final String ALL_STUDENTS_TOPIC = "/topic/announcements/all";
+    public static final String CLASS_TOPIC_PREFIX = "/topic/announcements/class/";
+    public static final String USER_TOPIC_PREFIX  = "/topic/notifications/";
+    public static final String UNREAD_TOPIC_PREFIX = "/topic/unread/";
+
+    public static String classTopic(String standard) {
+        return CLASS_TOPIC_PREFIX + standard;
+    }
+
+    public static String userTopic(Long userId) {
+        return USER_TOPIC_PREFIX + userId;
+    }
+
+    public static String unreadTopic(Long userId) {
+        return UNREAD_TOPIC_PREFIX + userId;
+    }
+
     /**
      * Configure the message broker:
      * - /topic: for broadcast messages (e.g., announcements)
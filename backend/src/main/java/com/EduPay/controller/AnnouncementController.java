@@ -1,6 +1,7 @@
 package com.EduPay.controller;
 
 import com.EduPay.dto.AnnouncementDto;
+import com.EduPay.dto.BroadcastJobStatus;
 import com.EduPay.dto.BroadcastRequest;
 import com.EduPay.service.AnnouncementService;
 import org.springframework.http.HttpStatus;
@@ -15,7 +16,8 @@ import java.util.Map;
  * REST controller for school announcement broadcasts.
  *
  * Admin endpoints:
- *   POST   /api/announcements/broadcast   ← THE MAIN ONE: ALL / CLASS / STUDENT
+ *   POST   /api/announcements/broadcast   ← THE MAIN ONE: ALL / CLASS / STUDENT (async, 202 + jobId)
+ *   GET    /api/announcements/broadcast/jobs/{jobId}  ← fan-out progress
  *   POST   /api/announcements             ← simple create (no WS push)
  *   PUT    /api/announcements/{id}
  *   DELETE /api/announcements/{id}
@@ -66,12 +68,24 @@ public class AnnouncementController {
      *   "studentId": "S042",
      *   "priority":  "URGENT"
      * }
+     *
+     * Returns 202 Accepted with the fan-out job (poll /broadcast/jobs/{jobId}).
      */
     @PostMapping("/broadcast")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<AnnouncementDto> broadcast(@RequestBody BroadcastRequest request) {
-        AnnouncementDto result = announcementService.broadcast(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    public ResponseEntity<BroadcastJobStatus> broadcast(@RequestBody BroadcastRequest request) {
+        BroadcastJobStatus job = announcementService.broadcast(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    /**
+     * Progress of a broadcast fan-out: persisted / pushed / failed counts
+     * and recipients per second.
+     */
+    @GetMapping("/broadcast/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BroadcastJobStatus> getBroadcastJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(announcementService.getBroadcastStatus(jobId));
     }
 
     // ─────────────────────────────────────────────────────────────────────────
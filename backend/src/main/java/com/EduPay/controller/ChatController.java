@@ -6,6 +6,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for AI chat interactions.
@@ -29,24 +30,25 @@ public class ChatController {
      * The AI uses RAG to search school policies and the student's fee data
      * to generate a grounded, personalized response.
      *
+     * The servlet thread is released while Gemini answers; the response is
+     * written when the returned future completes.
+     *
      * @param request Map with "question" key
      * @param authentication The authenticated user's security context
      * @return Map with "answer" and "sources" keys
      */
     @PostMapping("/chat")
-    public ResponseEntity<Map<String, Object>> chat(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> chat(
             @RequestBody Map<String, String> request,
             Authentication authentication) {
 
         String question = request.get("question");
         if (question == null || question.trim().isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                    Map.of("error", "Question cannot be empty"));
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(
+                    Map.of("error", "Question cannot be empty")));
         }
 
         String username = authentication.getName();
-        Map<String, Object> response = aiService.chat(question, username);
-
-        return ResponseEntity.ok(response);
+        return aiService.chat(question, username).thenApply(ResponseEntity::ok);
     }
 }
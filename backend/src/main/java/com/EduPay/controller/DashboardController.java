@@ -1,11 +1,16 @@
 package com.EduPay.controller;
 
 import com.EduPay.service.DashboardService;
+import com.EduPay.service.FinancialRollupService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -13,13 +18,52 @@ import java.util.Map;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final FinancialRollupService financialRollupService;
 
-    public DashboardController(DashboardService dashboardService) {
+    public DashboardController(DashboardService dashboardService,
+                               FinancialRollupService financialRollupService) {
         this.dashboardService = dashboardService;
+        this.financialRollupService = financialRollupService;
     }
 
     @GetMapping("/summary")
     public ResponseEntity<Map<String, Object>> getSummary() {
         return ResponseEntity.ok(dashboardService.getDashboardSummary());
     }
+
+    /** Reloads the running ledger totals from the database (e.g. after direct SQL edits). */
+    @PostMapping("/summary/refresh")
+    public ResponseEntity<Map<String, Object>> refreshSummary() {
+        return ResponseEntity.ok(dashboardService.refreshTotals());
+    }
+
+    /**
+     * Rollup time series: ?granularity=DAY|MONTH&from=&to=[&type=][&category=]
+     */
+    @GetMapping("/timeseries")
+    public ResponseEntity<List<Map<String, Object>>> getTimeSeries(
+            @RequestParam(defaultValue = "MONTH") String granularity,
+            @RequestParam LocalDate from,
+            @RequestParam LocalDate to,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String category) {
+        return ResponseEntity.ok(financialRollupService.getSeries(granularity, from, to, type, category));
+    }
+
+    /**
+     * Monthly totals of a year vs. the previous year.
+     */
+    @GetMapping("/timeseries/yoy")
+    public ResponseEntity<Map<String, Object>> getYearOverYear(
+            @RequestParam int year,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String category) {
+        return ResponseEntity.ok(financialRollupService.getYearOverYear(year, type, category));
+    }
+
+    /** Rebuilds all daily / monthly rollups from the ledger. */
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<Map<String, Object>> backfillRollups() {
+        return ResponseEntity.ok(financialRollupService.backfill());
+    }
 }
@@ -0,0 +1,73 @@
+package com.EduPay.controller;
+
+import com.EduPay.service.ExportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming audit exports (admin only).
+ *
+ * GET /api/admin/export/financial-records?format=csv|ndjson&gzip=false
+ * GET /api/admin/export/payments?format=csv|ndjson&gzip=false
+ *
+ * Rows are written to the response as they are read; with gzip=true the
+ * body is a .gz file.
+ */
+@RestController
+@RequestMapping("/api/admin/export")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping("/financial-records")
+    public ResponseEntity<StreamingResponseBody> exportFinancialRecords(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return stream("financial-records", format, gzip, exportService::exportFinancialRecords);
+    }
+
+    @GetMapping("/payments")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return stream("payments", format, gzip, exportService::exportPayments);
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String dataset, String format, boolean gzip,
+                                                         BiConsumer<String, OutputStream> exporter) {
+        String f = ExportService.normalizeFormat(format);
+        String filename = dataset + "-" + LocalDate.now() + "." + f + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : ExportService.NDJSON.equals(f) ? MediaType.parseMediaType("application/x-ndjson")
+                : MediaType.parseMediaType("text/csv");
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gz = new GZIPOutputStream(out, 64 * 1024);
+                exporter.accept(f, gz);
+                gz.finish();
+            } else {
+                exporter.accept(f, out);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+}
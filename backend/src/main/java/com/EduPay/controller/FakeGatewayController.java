@@ -0,0 +1,49 @@
+package com.EduPay.controller;
+
+import com.EduPay.dto.PaymentCallback;
+import com.EduPay.service.FakePaymentGateway;
+import com.EduPay.service.PaymentCallbackProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Drives the in-process fake gateway: completing an order feeds the resulting
+ * webhook through the same callback queue as the real gateway would.
+ * Only registered in the local / test profiles with edupay.payments.gateway=fake,
+ * and admin-only (SecurityConfig): completing an order credits the fee.
+ */
+@RestController
+@RequestMapping("/api/payments/fake-gateway")
+@Profile({"local", "test"})
+@ConditionalOnProperty(name = "edupay.payments.gateway", havingValue = "fake")
+public class FakeGatewayController {
+
+    private final FakePaymentGateway fakePaymentGateway;
+    private final PaymentCallbackProcessor paymentCallbackProcessor;
+
+    public FakeGatewayController(FakePaymentGateway fakePaymentGateway,
+                                 PaymentCallbackProcessor paymentCallbackProcessor) {
+        this.fakePaymentGateway = fakePaymentGateway;
+        this.paymentCallbackProcessor = paymentCallbackProcessor;
+    }
+
+    @PostMapping("/orders/{orderId}/complete")
+    public ResponseEntity<?> completeOrder(@PathVariable String orderId,
+                                           @RequestParam(defaultValue = "true") boolean success) {
+        try {
+            PaymentCallback callback = fakePaymentGateway.complete(orderId, success);
+            boolean accepted = paymentCallbackProcessor.ingest(callback);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                    "status", accepted ? "accepted" : "duplicate",
+                    "paymentId", callback.getRazorpayPaymentId(),
+                    "orderId", orderId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+}
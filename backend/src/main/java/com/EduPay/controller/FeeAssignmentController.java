@@ -1,6 +1,7 @@
 package com.EduPay.controller;
 
 import com.EduPay.dto.FeeAssignmentRequest;
+import com.EduPay.model.FeeAssignmentRun;
 import com.EduPay.service.FeeAssignmentService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -14,6 +15,10 @@ import java.util.Map;
  * POST /api/fees/assign
  *   Assign a fee to ALL students / a CLASS / one STUDENT
  *
+ * GET  /api/fees/assign/runs/{runId}
+ * POST /api/fees/assign/runs/{runId}/resume
+ *   Inspect / resume a chunked bulk assignment run
+ *
  * POST /api/fees/apply-late-charge
  *   Apply 1% late fee to all overdue fees (scope: ALL / CLASS / STUDENT)
  */
@@ -51,6 +56,22 @@ public class FeeAssignmentController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Progress of a bulk assignment run (assignedCount, lastStudentPk, status).
+     */
+    @GetMapping("/assign/runs/{runId}")
+    public ResponseEntity<FeeAssignmentRun> getAssignmentRun(@PathVariable Long runId) {
+        return ResponseEntity.ok(feeAssignmentService.getRun(runId));
+    }
+
+    /**
+     * Resume an interrupted run from its last committed chunk.
+     */
+    @PostMapping("/assign/runs/{runId}/resume")
+    public ResponseEntity<Map<String, Object>> resumeAssignment(@PathVariable Long runId) {
+        return ResponseEntity.ok(feeAssignmentService.resumeAssignment(runId));
+    }
+
     // ─────────────────────────────────────────────────────────────────────────
     // LATE FEE (1%)
     // ─────────────────────────────────────────────────────────────────────────
@@ -63,7 +84,10 @@ public class FeeAssignmentController {
      *   ?scopeType=CLASS&standard=10 → only Class 10 overdue fees
      *   ?scopeType=STUDENT&studentId=S042 → only that student's overdue fees
      *
-     * Response: { "processed": 23, "totalLateCharge": 456.50, "rateApplied": "1%", "scope": "ALL" }
+     * Idempotent per day — fees already charged today are skipped on a repeated call.
+     *
+     * Response: { "processed": 23, "totalLateCharge": 456.50, "rateApplied": "1%", "scope": "ALL",
+     *             "chargeDate": "2024-05-02", "elapsedMs": 41, "feesPerSecond": 561 }
      */
     @PostMapping("/apply-late-charge")
     public ResponseEntity<Map<String, Object>> applyLateCharge(
@@ -1,69 +1,61 @@
 package com.EduPay.controller;
 
+import com.EduPay.dto.FinancialRecordPageDto;
 import com.EduPay.model.FinancialRecord;
-import com.EduPay.repository.FinancialRecordRepository;
+import com.EduPay.service.FinancialRecordService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.List;
 
 @RestController
 @RequestMapping("/api/financial-records")
 public class FinancialRecordController {
 
-    private final FinancialRecordRepository financialRecordRepository;
+    private final FinancialRecordService financialRecordService;
 
-    public FinancialRecordController(FinancialRecordRepository financialRecordRepository) {
-        this.financialRecordRepository = financialRecordRepository;
+    public FinancialRecordController(FinancialRecordService financialRecordService) {
+        this.financialRecordService = financialRecordService;
     }
 
+    /**
+     * Ledger listing: all filters combine; pages newest first by default.
+     * Pass the returned nextCursor back as ?cursor= for the next page.
+     */
     @GetMapping
-    public ResponseEntity<List<FinancialRecord>> getAllRecords(
+    public ResponseEntity<FinancialRecordPageDto> getAllRecords(
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) LocalDate startDate,
-            @RequestParam(required = false) LocalDate endDate) {
-        
-        List<FinancialRecord> records;
-        
-        if (type != null) {
-            records = financialRecordRepository.findByType(type);
-        } else if (category != null) {
-            records = financialRecordRepository.findByCategory(category);
-        } else if (startDate != null && endDate != null) {
-            records = financialRecordRepository.findByRecordDateBetween(startDate, endDate);
-        } else {
-            records = financialRecordRepository.findAll();
-        }
-        return ResponseEntity.ok(records);
+            @RequestParam(required = false) LocalDate endDate,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "desc") String sort) {
+        return ResponseEntity.ok(financialRecordService.search(type, category, startDate, endDate,
+                minAmount, maxAmount, cursor, size, sort));
     }
 
     @PostMapping
     public ResponseEntity<FinancialRecord> createRecord(@RequestBody FinancialRecord record) {
-        FinancialRecord savedRecord = financialRecordRepository.save(record);
+        FinancialRecord savedRecord = financialRecordService.create(record);
         return ResponseEntity.status(HttpStatus.CREATED).body(savedRecord);
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<FinancialRecord> updateRecord(@PathVariable Long id, @RequestBody FinancialRecord recordDetails) {
-        return financialRecordRepository.findById(id).map(record -> {
-            record.setAmount(recordDetails.getAmount());
-            record.setType(recordDetails.getType());
-            record.setCategory(recordDetails.getCategory());
-            record.setRecordDate(recordDetails.getRecordDate());
-            record.setNotes(recordDetails.getNotes());
-            return ResponseEntity.ok(financialRecordRepository.save(record));
-        }).orElse(ResponseEntity.notFound().build());
+        return financialRecordService.update(id, recordDetails)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteRecord(@PathVariable Long id) {
-        if (financialRecordRepository.existsById(id)) {
-            financialRecordRepository.deleteById(id);
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+        return financialRecordService.delete(id)
+                .map(record -> ResponseEntity.noContent().<Void>build())
+                .orElse(ResponseEntity.notFound().build());
     }
 }
@@ -1,14 +1,21 @@
 package com.EduPay.controller;
 
+import com.EduPay.config.CustomUserDetails;
+import com.EduPay.dto.InboxItemDto;
+import com.EduPay.dto.InboxPageDto;
+import com.EduPay.dto.MarkReadRequest;
 import com.EduPay.model.Notification;
-import com.EduPay.model.User;
 import com.EduPay.repository.NotificationRepository;
-import com.EduPay.repository.UserRepository;
+import com.EduPay.service.InboxService;
 import com.EduPay.service.NotificationService;
+import com.EduPay.service.UnreadCounterService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -16,41 +23,68 @@ import java.util.Optional;
 /**
  * REST controller for notification management.
  *
- * GET  /api/notifications        — Fetch current user's notifications
+ * GET  /api/notifications        — Fetch current user's inbox (personal notifications + audience announcements)
+ * GET  /api/notifications/feed   — Cursor-paginated inbox (?cursor=&size=&unreadOnly=)
  * GET  /api/notifications/unread — Get unread count
  * PUT  /api/notifications/{id}/read — Mark a notification as read
+ * PUT  /api/notifications/announcements/{announcementId}/read — Mark an audience announcement as read
+ * PUT  /api/notifications/read-all — Mark the whole inbox read
+ * PUT  /api/notifications/read-before?before= — Mark everything up to a timestamp read
+ * PUT  /api/notifications/read   — Mark a batch of notification / announcement ids read
  * POST /api/admin/notifications/trigger — Admin triggers fee reminders
+ * GET  /api/admin/notifications/reminder-cache — Reminder template cache metrics
  */
 @RestController
 public class NotificationController {
 
     private final NotificationRepository notificationRepository;
     private final NotificationService notificationService;
-    private final UserRepository userRepository;
+    private final InboxService inboxService;
+    private final UnreadCounterService unreadCounterService;
 
     public NotificationController(NotificationRepository notificationRepository,
                                   NotificationService notificationService,
-                                  UserRepository userRepository) {
+                                  InboxService inboxService,
+                                  UnreadCounterService unreadCounterService) {
         this.notificationRepository = notificationRepository;
         this.notificationService = notificationService;
-        this.userRepository = userRepository;
+        this.inboxService = inboxService;
+        this.unreadCounterService = unreadCounterService;
     }
 
     /**
-     * Get all notifications for the authenticated user.
+     * Get the inbox for the authenticated user: personal notifications merged
+     * with the announcements addressed to the user's audiences, newest first.
      */
     @GetMapping("/api/notifications")
-    public ResponseEntity<List<Notification>> getNotifications(Authentication authentication) {
+    public ResponseEntity<List<InboxItemDto>> getNotifications(Authentication authentication) {
         Long userId = getUserId(authentication);
         if (userId == null) {
             return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok(
-                notificationRepository.findByUserIdOrderByCreatedAtDesc(userId));
+                inboxService.getInbox(userId, getRole(authentication)));
     }
 
     /**
-     * Get the count of unread notifications for the authenticated user.
+     * Keyset-paginated inbox feed. Pass the returned nextCursor back as
+     * ?cursor= to fetch the next page; size defaults to 20 (max 100).
+     */
+    @GetMapping("/api/notifications/feed")
+    public ResponseEntity<InboxPageDto> getFeed(@RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer size,
+                                                @RequestParam(defaultValue = "false") boolean unreadOnly,
+                                                Authentication authentication) {
+        Long userId = getUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(inboxService.getFeed(userId, getRole(authentication), cursor, size, unreadOnly));
+    }
+
+    /**
+     * Get the count of unread notifications for the authenticated user,
+     * served from the in-memory counter (live updates on /topic/unread/{userId}).
      */
     @GetMapping("/api/notifications/unread")
     public ResponseEntity<Map<String, Long>> getUnreadCount(Authentication authentication) {
@@ -58,7 +92,7 @@ public class NotificationController {
         if (userId == null) {
             return ResponseEntity.notFound().build();
         }
-        long count = notificationRepository.countByUserIdAndIsReadFalse(userId);
+        long count = unreadCounterService.get(userId, getRole(authentication));
         return ResponseEntity.ok(Map.of("count", count));
     }
 
@@ -75,30 +109,125 @@ public class NotificationController {
         }
 
         Notification notification = notifOpt.get();
-        notification.setIsRead(true);
-        notificationRepository.save(notification);
+        if (!Boolean.TRUE.equals(notification.getIsRead())) {
+            long counterMark = unreadCounterService.mark();
+            notification.setIsRead(true);
+            notificationRepository.save(notification);
+            unreadCounterService.decrement(userId, counterMark);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Mark an audience announcement as read for the authenticated user.
+     */
+    @PutMapping("/api/notifications/announcements/{announcementId}/read")
+    public ResponseEntity<Void> markAnnouncementAsRead(@PathVariable Long announcementId,
+                                                       Authentication authentication) {
+        Long userId = getUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long counterMark = unreadCounterService.mark();
+        if (inboxService.markAnnouncementRead(userId, getRole(authentication), announcementId)) {
+            unreadCounterService.decrement(userId, counterMark);
+        }
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Mark every notification and announcement in the inbox as read.
+     * Responds with the changed counts and the new unread count.
+     */
+    @PutMapping("/api/notifications/read-all")
+    public ResponseEntity<Map<String, Object>> markAllAsRead(Authentication authentication) {
+        Long userId = getUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long counterMark = unreadCounterService.mark();
+        return ResponseEntity.ok(readReceipt(userId, authentication, counterMark,
+                inboxService.markAllRead(userId, getRole(authentication))));
+    }
+
+    /**
+     * Mark every inbox item created at or before the given timestamp as read.
+     */
+    @PutMapping("/api/notifications/read-before")
+    public ResponseEntity<Map<String, Object>> markReadBefore(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long counterMark = unreadCounterService.mark();
+        return ResponseEntity.ok(readReceipt(userId, authentication, counterMark,
+                inboxService.markReadUpTo(userId, getRole(authentication), before)));
+    }
+
+    /**
+     * Batched read receipt for a list of notification ids and/or announcement ids.
+     */
+    @PutMapping("/api/notifications/read")
+    public ResponseEntity<Map<String, Object>> markBatchAsRead(@RequestBody MarkReadRequest request,
+                                                               Authentication authentication) {
+        Long userId = getUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long counterMark = unreadCounterService.mark();
+        return ResponseEntity.ok(readReceipt(userId, authentication, counterMark,
+                inboxService.markRead(userId, getRole(authentication),
+                        request.getIds(), request.getAnnouncementIds())));
+    }
+
+    /**
+     * Helper: report a bulk read to the unread counter (which pushes the new
+     * count over WebSocket) and build the response body.
+     */
+    private Map<String, Object> readReceipt(Long userId, Authentication authentication, long counterMark,
+                                            Map<String, Integer> counts) {
+        unreadCounterService.decrement(userId, counts.get("marked"), counterMark);
+        Map<String, Object> body = new LinkedHashMap<>(counts);
+        body.put("unread", unreadCounterService.get(userId, getRole(authentication)));
+        return body;
+    }
+
     /**
      * Admin endpoint: trigger AI-generated fee reminders for all students
-     * with pending fees. Sends real-time WebSocket notifications.
+     * with pending fees. Sends real-time WebSocket notifications and
+     * returns the run report (sent / skipped / failed counts, throughput).
      */
     @PostMapping("/api/admin/notifications/trigger")
-    public ResponseEntity<Map<String, String>> triggerReminders() {
-        notificationService.triggerRemindersForAllPending();
-        return ResponseEntity.ok(Map.of(
-                "status", "success",
-                "message", "Fee reminders are being generated and sent"));
+    public ResponseEntity<Map<String, Object>> triggerReminders() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("status", "success");
+        report.put("message", "Fee reminders generated and sent");
+        report.putAll(notificationService.triggerRemindersForAllPending());
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Admin endpoint: reminder template cache metrics
+     * (buckets, hits, misses, hitRatio, llmCallsAvoided).
+     */
+    @GetMapping("/api/admin/notifications/reminder-cache")
+    public ResponseEntity<Map<String, Object>> getReminderCacheStats() {
+        return ResponseEntity.ok(notificationService.getReminderTemplateCacheStats());
+    }
+
+    /**
+     * Helper: role of the authenticated principal (e.g. "STUDENT").
+     */
+    private String getRole(Authentication authentication) {
+        return authentication.getPrincipal() instanceof CustomUserDetails details ? details.getRole() : null;
     }
 
     /**
-     * Helper: resolve the user ID from the authenticated principal.
+     * Helper: the user ID carried by the authenticated principal (from the JWT, no lookup).
      */
     private Long getUserId(Authentication authentication) {
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .map(User::getId)
-                .orElse(null);
+        return authentication.getPrincipal() instanceof CustomUserDetails details ? details.getId() : null;
     }
 }
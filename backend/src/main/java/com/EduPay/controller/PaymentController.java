@@ -2,20 +2,29 @@ package com.EduPay.controller;
 
 import com.EduPay.dto.PaymentCallback;
 import com.EduPay.dto.PaymentRequest;
+import com.EduPay.service.PaymentCallbackProcessor;
+import com.EduPay.service.PaymentReconciliationService;
 import com.EduPay.service.PaymentService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/payments")
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentCallbackProcessor paymentCallbackProcessor;
+    private final PaymentReconciliationService paymentReconciliationService;
 
     // Constructor for dependency injection
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentCallbackProcessor paymentCallbackProcessor,
+                             PaymentReconciliationService paymentReconciliationService) {
         this.paymentService = paymentService;
+        this.paymentCallbackProcessor = paymentCallbackProcessor;
+        this.paymentReconciliationService = paymentReconciliationService;
     }
 
 
@@ -40,15 +49,11 @@ public class PaymentController {
     @PostMapping("/callback")
     public ResponseEntity<?> handlePaymentCallback(@RequestBody PaymentCallback paymentCallback) {
         try {
-            // The service will verify the payment signature and update the payment status in the DB
-            paymentService.handlePaymentGatewayCallback(
-                    paymentCallback.getRazorpayPaymentId(),
-                    paymentCallback.getRazorpayOrderId(),
-                    paymentCallback.getRazorpaySignature(),
-                    paymentCallback.getStatus(),
-                    paymentCallback.getErrorMessage()
-            );
-            return ResponseEntity.ok("Payment callback processed successfully.");
+            // Recorded once per gateway payment id and applied asynchronously by the callback workers;
+            // retries of an already received callback are acknowledged without being queued again
+            boolean accepted = paymentCallbackProcessor.ingest(paymentCallback);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of("status", accepted ? "accepted" : "duplicate"));
         } catch (RuntimeException e) {
             // Log the error and return an appropriate response
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
@@ -56,6 +61,30 @@ public class PaymentController {
     }
 
 
+    /**
+     * Callback pipeline metrics: queue depth, counters and ack / apply latency.
+     */
+    @GetMapping("/callback-metrics")
+    public ResponseEntity<Map<String, Object>> getCallbackMetrics() {
+        return ResponseEntity.ok(paymentCallbackProcessor.metrics());
+    }
+
+    /**
+     * Report of the last reconciliation pass over unsettled payment orders.
+     */
+    @GetMapping("/reconciliation")
+    public ResponseEntity<Map<String, Object>> getReconciliationReport() {
+        return ResponseEntity.ok(paymentReconciliationService.getLastReport());
+    }
+
+    /**
+     * Runs a reconciliation pass now (e.g. at a term deadline) and returns its report.
+     */
+    @PostMapping("/reconciliation")
+    public ResponseEntity<Map<String, Object>> runReconciliation() {
+        return ResponseEntity.ok(paymentReconciliationService.reconcile());
+    }
+
     @GetMapping("/verify/{paymentId}")
     public ResponseEntity<?> verifyPayment(@PathVariable String paymentId) {
         try {
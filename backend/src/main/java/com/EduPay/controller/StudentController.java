@@ -3,9 +3,11 @@ package com.EduPay.controller;
 import com.EduPay.dto.AnnouncementDto;
 import com.EduPay.dto.FeeDto;
 import com.EduPay.dto.PaymentHistoryDto;
+import com.EduPay.dto.StudentDto;
 import com.EduPay.service.AnnouncementService;
 import com.EduPay.service.FeeService; // Assuming a FeeService for student-specific fee retrieval
 import com.EduPay.service.PaymentService; // Assuming a PaymentService for student-specific payment retrieval
+import com.EduPay.service.StudentService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,12 +25,21 @@ public class StudentController {
     private final FeeService feeService;
     private final AnnouncementService announcementService;
     private final PaymentService paymentService;
+    private final StudentService studentService;
 
     // Constructor for dependency injection
-    public StudentController(FeeService feeService, AnnouncementService announcementService, PaymentService paymentService) {
+    public StudentController(FeeService feeService, AnnouncementService announcementService,
+                             PaymentService paymentService, StudentService studentService) {
         this.feeService = feeService;
         this.announcementService = announcementService;
         this.paymentService = paymentService;
+        this.studentService = studentService;
+    }
+
+
+    @GetMapping("/profile")
+    public ResponseEntity<StudentDto> getMyProfile() {
+        return ResponseEntity.ok(studentService.getCurrentStudentProfile());
     }
 
 
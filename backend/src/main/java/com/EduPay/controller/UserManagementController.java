@@ -2,6 +2,7 @@ package com.EduPay.controller;
 
 import com.EduPay.model.User;
 import com.EduPay.repository.UserRepository;
+import com.EduPay.service.AdminService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
@@ -14,10 +15,13 @@ public class UserManagementController {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AdminService adminService;
 
-    public UserManagementController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserManagementController(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                                    AdminService adminService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.adminService = adminService;
     }
 
     @GetMapping
@@ -36,17 +40,15 @@ public class UserManagementController {
 
     @PutMapping("/{id}/role")
     public ResponseEntity<User> updateUserRole(@PathVariable Long id, @RequestBody User roleUpdate) {
-        return userRepository.findById(id).map(user -> {
-            user.setRole(roleUpdate.getRole().toUpperCase());
-            return ResponseEntity.ok(userRepository.save(user));
-        }).orElse(ResponseEntity.notFound().build());
+        return adminService.updateUserRole(id, roleUpdate.getRole())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @PutMapping("/{id}/status")
     public ResponseEntity<User> updateUserStatus(@PathVariable Long id, @RequestBody User statusUpdate) {
-        return userRepository.findById(id).map(user -> {
-            user.setStatus(statusUpdate.getStatus().toUpperCase());
-            return ResponseEntity.ok(userRepository.save(user));
-        }).orElse(ResponseEntity.notFound().build());
+        return adminService.updateUserStatus(id, statusUpdate.getStatus())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 }
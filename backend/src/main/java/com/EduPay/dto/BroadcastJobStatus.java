@@ -0,0 +1,29 @@
+package com.EduPay.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress snapshot of an asynchronous announcement fan-out.
+ *
+ * status: QUEUED | RUNNING | COMPLETED | FAILED
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastJobStatus {
+    private String jobId;
+    private Long announcementId;
+    private String status;
+    private Integer totalRecipients; // null until recipients are resolved
+    private Integer reached;         // Recipients delivered to (audience size for topic broadcasts)
+    private Integer pushed;          // WebSocket frames sent (1 for an audience-topic broadcast)
+    private Integer failed;          // Recipients whose push failed
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long elapsedMs;
+    private Double recipientsPerSecond;
+}
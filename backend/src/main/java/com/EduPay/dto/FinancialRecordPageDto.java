@@ -0,0 +1,23 @@
+package com.EduPay.dto;
+
+import com.EduPay.model.FinancialRecord;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of financial records.
+ *
+ * Pass nextCursor back as ?cursor= (with the same filters and sort) for the
+ * following page; it is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FinancialRecordPageDto {
+    private List<FinancialRecord> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,27 @@
+package com.EduPay.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of a user's notification inbox, merged at read time from
+ * personal Notification rows and audience Announcements.
+ *
+ * source: NOTIFICATION (id = notification id) | ANNOUNCEMENT (id = null, see announcementId)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxItemDto {
+    private Long id;
+    private Long announcementId;
+    private String source;
+    private String title;
+    private String message;
+    private String type;
+    private Boolean isRead;
+    private LocalDateTime createdAt;
+}
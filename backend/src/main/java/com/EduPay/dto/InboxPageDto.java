@@ -0,0 +1,22 @@
+package com.EduPay.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the keyset-paginated inbox feed.
+ *
+ * nextCursor is opaque to clients — pass it back as ?cursor= to fetch the
+ * following page; it is null when there are no more items.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxPageDto {
+    private List<InboxItemDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,18 @@
+package com.EduPay.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Batched read receipt: personal notification ids and/or audience announcement ids.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarkReadRequest {
+    private List<Long> ids;
+    private List<Long> announcementIds;
+}
@@ -9,7 +9,7 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class PaymentRequest {
     private Long studentId;
-    private Long feeId;
+    private Long feeId;       // Required: orders are created and credited per fee
     private Double amount;
     private String currency;
     private String description; // Description for the payment gateway
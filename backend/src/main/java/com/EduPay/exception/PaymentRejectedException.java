@@ -0,0 +1,12 @@
+package com.EduPay.exception;
+
+/**
+ * A payment that cannot be applied to its fee (unknown fee, wrong student,
+ * or more than the outstanding amount). Retrying the same payment won't help.
+ */
+public class PaymentRejectedException extends RuntimeException {
+
+    public PaymentRejectedException(String message) {
+        super(message);
+    }
+}
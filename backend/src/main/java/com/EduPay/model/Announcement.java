@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -15,7 +16,10 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime; // Use LocalDateTime for date and time
 
 @Entity
-@Table(name = "announcements") // Specify table name for clarity
+@Table(name = "announcements", indexes = { // Specify table name for clarity
+        // Inbox feed: WHERE target_audience IN (...) ORDER BY publish_date DESC
+        @Index(name = "idx_announcements_audience_published", columnList = "target_audience, publish_date, id")
+})
 @Data // Lombok annotation for getters, setters, toString, equals, hashCode
 @NoArgsConstructor // Lombok annotation for no-argument constructor
 @AllArgsConstructor // Lombok annotation for all-argument constructor
@@ -35,6 +39,8 @@ public class Announcement {
     private LocalDateTime publishDate; // Date and time when the announcement was published
     @Column(nullable = true) // Target audience can be optional (e.g., "All Students", "Parents", "Class 10")
     private String targetAudience;
+    @Column(nullable = true) // INFO | ALERT | URGENT — set by broadcast, null for plain announcements
+    private String priority;
     // Relationship with User entity: Many announcements can be created by one user (admin)
     @ManyToOne
     @JoinColumn(name = "creator_user_id", nullable = false) // Foreign key column
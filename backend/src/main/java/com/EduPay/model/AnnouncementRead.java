@@ -0,0 +1,35 @@
+package com.EduPay.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read marker for one audience announcement and one user.
+ * Announcements are stored once (fan-out on read), so per-user read state
+ * lives here instead of in a Notification row per recipient.
+ */
+@Entity
+@Table(name = "announcement_reads",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "announcement_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnnouncementRead {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "announcement_id", nullable = false)
+    private Long announcementId;
+
+    @Column(nullable = false)
+    private LocalDateTime readAt;
+}
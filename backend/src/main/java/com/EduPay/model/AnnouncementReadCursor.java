@@ -0,0 +1,26 @@
+package com.EduPay.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-user read cursor for audience announcements: everything published
+ * at or before lastReadAt counts as read, without a marker row per announcement.
+ */
+@Entity
+@Table(name = "announcement_read_cursors")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnnouncementReadCursor {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private LocalDateTime lastReadAt;
+}
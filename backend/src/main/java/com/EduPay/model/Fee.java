@@ -43,6 +43,9 @@ public class Fee {
     @Column(nullable = false)
     private String status; // e.g., "Pending", "Partially Paid", "Paid", "Overdue"
 
+    @Column(nullable = true)
+    private LocalDate lastLateChargeDate; // Day the last 1% late charge was applied (one charge per day max)
+
     // Relationship with Student entity: Many fees belong to one student
     @ManyToOne
     @JoinColumn(name = "student_id", nullable = false) // Foreign key column
@@ -0,0 +1,64 @@
+package com.EduPay.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress record for a bulk fee assignment.
+ * Each chunk commit advances lastStudentPk, so an interrupted run can be
+ * resumed from the last committed student instead of starting over.
+ *
+ * A run is executed by one owner at a time: chunk commits only count while
+ * owner matches, and refresh heartbeatAt, so a resume can tell a live run
+ * from one whose executor died.
+ */
+@Entity
+@Table(name = "fee_assignment_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeeAssignmentRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String scopeType; // ALL | CLASS | STUDENT
+
+    private String standard; // Set when scopeType = CLASS
+
+    private String studentId; // Set when scopeType = STUDENT
+
+    @Column(nullable = false)
+    private String feeType;
+
+    @Column(nullable = false)
+    private Double amount;
+
+    @Column(nullable = false)
+    private LocalDate dueDate;
+
+    @Column(nullable = false)
+    private Long lastStudentPk = 0L; // Keyset cursor: highest students.id already assigned
+
+    @Column(nullable = false)
+    private Integer assignedCount = 0;
+
+    @Column(nullable = false)
+    private String status; // RUNNING, COMPLETED, FAILED
+
+    private String owner; // Token of the executor currently running the chunks
+
+    private LocalDateTime heartbeatAt; // Last chunk commit (or claim) by the owner
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+}
@@ -9,7 +9,11 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "financial_records")
+@Table(name = "financial_records", indexes = {
+        @Index(name = "idx_financial_records_date", columnList = "record_date, id"),
+        // Filtered listing: date range + type / category, ordered by record_date
+        @Index(name = "idx_financial_records_date_type_category", columnList = "record_date, type, category")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
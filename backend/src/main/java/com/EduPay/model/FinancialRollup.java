@@ -0,0 +1,46 @@
+package com.EduPay.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated ledger bucket: total amount and record count of one
+ * type + category for one day or month. Maintained incrementally on every
+ * FinancialRecord write and rebuildable from history (FinancialRollupService).
+ */
+@Entity
+@Table(name = "financial_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_financial_rollups_bucket",
+                columnNames = {"granularity", "bucket_start", "type", "category"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FinancialRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String granularity; // DAY, MONTH
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDate bucketStart; // The day, or the first day of the month
+
+    @Column(nullable = false)
+    private String type; // INCOME, EXPENSE (upper-cased)
+
+    @Column(nullable = false)
+    private String category;
+
+    @Column(nullable = false)
+    private BigDecimal total;
+
+    @Column(nullable = false)
+    private Long recordCount;
+}
@@ -13,7 +13,11 @@ import java.time.LocalDateTime;
  * Notifications can be AI-generated fee reminders or system alerts.
  */
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        // Feed / unread lookups: WHERE user_id = ? [AND is_read = false] ORDER BY created_at DESC
+        @Index(name = "idx_notifications_user_read_created", columnList = "user_id, is_read, created_at"),
+        @Index(name = "idx_notifications_user_created", columnList = "user_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
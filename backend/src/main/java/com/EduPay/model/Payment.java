@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -15,7 +16,10 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime; // For payment date and time
 
 @Entity
-@Table(name = "payments") // Specify table name for clarity (plural is common)
+@Table(name = "payments", indexes = { // Specify table name for clarity (plural is common)
+        @Index(name = "idx_payments_gateway_order_id", columnList = "gateway_order_id"),
+        @Index(name = "idx_payments_gateway_payment_id", columnList = "gateway_payment_id")
+})
 @Data // Lombok annotation for getters, setters, toString, equals, hashCode
 @NoArgsConstructor // Lombok annotation for no-argument constructor
 @AllArgsConstructor // Lombok annotation for all-argument constructor
@@ -38,7 +42,7 @@ public class Payment {
     private LocalDateTime paymentDate; // Date and time when the payment was made
 
     @Column(nullable = false)
-    private String status; // e.g., "Success", "Pending", "Failed"
+    private String status; // e.g., "Success", "Pending", "Failed", "Unapplied" (taken by the gateway, not credited)
 
     // For online payments, store gateway-specific details
     @Column(nullable = true)
@@ -0,0 +1,62 @@
+package com.EduPay.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A received payment gateway callback.
+ *
+ * The unique dedupKey (gateway payment id) makes this table the idempotency
+ * store — a retried webhook for the same payment is rejected at insert time —
+ * and the state column makes it the durable work queue drained by
+ * PaymentCallbackProcessor.
+ */
+@Entity
+@Table(name = "payment_callback_events",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_callback_dedup", columnNames = "dedup_key"),
+        indexes = @Index(name = "idx_payment_callback_state", columnList = "state, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentCallbackEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "dedup_key", nullable = false)
+    private String dedupKey; // gateway payment id, or order:<orderId>:<status> when the gateway sent none
+
+    private String gatewayPaymentId;
+
+    private String gatewayOrderId;
+
+    private String signature;
+
+    private String gatewayStatus; // "success" / "failed" as reported by the gateway
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private String state; // QUEUED, PROCESSING, APPLIED, IGNORED, PARKED (needs refund / manual allocation), FAILED
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime claimedAt;
+
+    private LocalDateTime nextAttemptAt; // QUEUED events are not claimed before this (retry backoff); null = now
+
+    private LocalDateTime processedAt;
+}
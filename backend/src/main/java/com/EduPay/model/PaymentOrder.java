@@ -0,0 +1,62 @@
+package com.EduPay.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A payment order created with the gateway for one fee.
+ * The gateway callback only carries the order id, so the order is what ties
+ * a payment back to its student, fee and amount.
+ */
+@Entity
+@Table(name = "payment_orders",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_orders_gateway_order", columnNames = "gateway_order_id"),
+        indexes = {
+                @Index(name = "idx_payment_orders_status_created", columnList = "status, created_at"),
+                @Index(name = "idx_payment_orders_status_id", columnList = "status, id") // reconciliation keyset scan
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentOrder {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "gateway_order_id", nullable = false)
+    private String gatewayOrderId;
+
+    @Column(nullable = false)
+    private Long studentPk; // students.id
+
+    @Column(nullable = false)
+    private Long feeId;
+
+    @Column(nullable = false)
+    private Double amount;
+
+    @Column(nullable = false)
+    private String currency;
+
+    private String description;
+
+    @Column(nullable = false)
+    private String status; // CREATED, PAID, FAILED, EXPIRED
+
+    private String gatewayPaymentId; // Set once the gateway reports the payment
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime completedAt;
+
+    private Integer reconcileFailures; // gateway status lookups that failed during reconciliation (null = none)
+
+    @Column(length = 1000)
+    private String lastReconcileError;
+}
@@ -45,6 +45,9 @@ public class Student {
     @Column(nullable = false)
     private String standard; // Changed to String (e.g., "Class 10", "XI Science")
 
+    @Column(name = "user_id", unique = true) // Unique → indexed user ↔ student lookup
+    private Long userId; // users.id of the student's login account (null until linked)
+
     // Multi-tenancy: Link student to the admin (User entity) who created them
     @ManyToOne
     @JoinColumn(name = "admin_user_id", nullable = false) // Foreign key column
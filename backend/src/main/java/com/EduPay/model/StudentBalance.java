@@ -0,0 +1,51 @@
+package com.EduPay.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Maintained per-student fee balance (projection of the student's fees).
+ * Updated in the same transaction as every fee assignment, late charge and
+ * payment, so callers read a student's totals with one primary-key lookup.
+ */
+@Entity
+@Table(name = "student_balances")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentBalance {
+
+    @Id
+    @Column(name = "student_id")
+    private Long studentPk; // students.id
+
+    @Column(nullable = false)
+    private Double totalBilled = 0.0; // Sum of fee amounts (incl. late charges)
+
+    @Column(nullable = false)
+    private Double totalPaid = 0.0;
+
+    @Column(nullable = false)
+    private Double outstanding = 0.0;
+
+    private LocalDate earliestDueDate; // Earliest due date among fees with an outstanding amount; null when settled
+
+    @Column(nullable = false)
+    private Integer pendingFeeCount = 0; // Fees with an outstanding amount
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    /** Zero balance for a student that has no fees yet. */
+    public static StudentBalance empty(Long studentPk) {
+        StudentBalance balance = new StudentBalance();
+        balance.setStudentPk(studentPk);
+        balance.setUpdatedAt(LocalDateTime.now());
+        return balance;
+    }
+}
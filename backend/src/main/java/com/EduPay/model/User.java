@@ -38,6 +38,9 @@ public class User {
     @Column(nullable = false)
     private String status = "ACTIVE"; // User's status: ACTIVE, INACTIVE
 
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private Integer tokenVersion = 0; // Carried in issued JWTs; bumped to revoke every token issued so far
+
     @OneToMany(mappedBy = "admin")
     private List<Student> managedStudents = new ArrayList<>(); // Students managed by this admin
 
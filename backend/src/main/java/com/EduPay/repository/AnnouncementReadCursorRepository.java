@@ -0,0 +1,22 @@
+package com.EduPay.repository;
+
+import com.EduPay.model.AnnouncementReadCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface AnnouncementReadCursorRepository extends JpaRepository<AnnouncementReadCursor, Long> {
+
+    // Upsert that only ever moves the cursor forward
+    @Modifying
+    @Query(value = "INSERT INTO announcement_read_cursors (user_id, last_read_at) VALUES (:userId, :readAt) " +
+            "ON CONFLICT (user_id) DO UPDATE SET last_read_at = " +
+            "GREATEST(announcement_read_cursors.last_read_at, EXCLUDED.last_read_at)",
+            nativeQuery = true)
+    int advance(@Param("userId") Long userId, @Param("readAt") LocalDateTime readAt);
+}
@@ -0,0 +1,36 @@
+package com.EduPay.repository;
+
+import com.EduPay.model.AnnouncementRead;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AnnouncementReadRepository extends JpaRepository<AnnouncementRead, Long> {
+
+    boolean existsByUserIdAndAnnouncementId(Long userId, Long announcementId);
+
+    // Which of the given announcements this user has already marked read
+    @Query("SELECT r.announcementId FROM AnnouncementRead r WHERE r.userId = :userId AND r.announcementId IN :ids")
+    List<Long> findReadAnnouncementIds(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+    // Batched read markers: one INSERT for every listed announcement that is in the user's
+    // audiences and still unread (after the cursor, no marker yet); returns markers written
+    @Modifying
+    @Query(value = "INSERT INTO announcement_reads (user_id, announcement_id, read_at) " +
+            "SELECT :userId, a.id, :readAt FROM announcements a " +
+            "WHERE a.id IN (:ids) AND a.target_audience IN (:audiences) AND a.publish_date > :cursor " +
+            "ON CONFLICT (user_id, announcement_id) DO NOTHING",
+            nativeQuery = true)
+    int insertUnreadMarkers(@Param("userId") Long userId,
+                            @Param("ids") Collection<Long> ids,
+                            @Param("audiences") List<String> audiences,
+                            @Param("cursor") LocalDateTime cursor,
+                            @Param("readAt") LocalDateTime readAt);
+}
@@ -1,7 +1,11 @@
 package com.EduPay.repository;
 
+import com.EduPay.dto.InboxItemDto;
 import com.EduPay.model.Announcement;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -22,4 +26,56 @@ public interface AnnouncementRepository extends JpaRepository<Announcement, Long
     List<Announcement> findByTargetAudienceInOrderByPublishDateDesc(List<String> targetAudiences);
 
     List<Announcement> findByPublishDateAfter(LocalDateTime date);
+
+    // Fan-out on read: audience announcements the user has not read
+    // (published after their read cursor and without a read marker)
+    @Query("SELECT COUNT(a) FROM Announcement a WHERE a.targetAudience IN :audiences " +
+            "AND a.publishDate > :cursor AND NOT EXISTS " +
+            "(SELECT 1 FROM AnnouncementRead r WHERE r.announcementId = a.id AND r.userId = :userId)")
+    long countUnreadForAudiences(@Param("audiences") List<String> audiences,
+                                 @Param("cursor") LocalDateTime cursor,
+                                 @Param("userId") Long userId);
+
+    // Keyset feed page of audience announcements with the user's read state resolved in SQL.
+    // `type` carries the raw priority; InboxService maps it to the notification type.
+    @Query("SELECT new com.EduPay.dto.InboxItemDto(CAST(NULL AS Long), a.id, 'ANNOUNCEMENT', " +
+            "a.title, a.content, a.priority, " +
+            "CASE WHEN a.publishDate <= :readCursor OR EXISTS " +
+            "(SELECT 1 FROM AnnouncementRead r WHERE r.announcementId = a.id AND r.userId = :userId) " +
+            "THEN true ELSE false END, a.publishDate) " +
+            "FROM Announcement a WHERE a.targetAudience IN :audiences " +
+            "AND (a.publishDate < :before OR (a.publishDate = :before AND a.id < :tieId)) " +
+            "AND (:unreadOnly = false OR (a.publishDate > :readCursor AND NOT EXISTS " +
+            "(SELECT 1 FROM AnnouncementRead r2 WHERE r2.announcementId = a.id AND r2.userId = :userId))) " +
+            "ORDER BY a.publishDate DESC, a.id DESC")
+    List<InboxItemDto> findFeedPage(@Param("audiences") List<String> audiences,
+                                    @Param("userId") Long userId,
+                                    @Param("readCursor") LocalDateTime readCursor,
+                                    @Param("before") LocalDateTime before,
+                                    @Param("tieId") Long tieId,
+                                    @Param("unreadOnly") boolean unreadOnly,
+                                    Limit limit);
+
+    // Unread audience announcements published up to a point — what advancing the read cursor would clear
+    @Query("SELECT COUNT(a) FROM Announcement a WHERE a.targetAudience IN :audiences " +
+            "AND a.publishDate > :cursor AND a.publishDate <= :upTo AND NOT EXISTS " +
+            "(SELECT 1 FROM AnnouncementRead r WHERE r.announcementId = a.id AND r.userId = :userId)")
+    long countUnreadForAudiencesUpTo(@Param("audiences") List<String> audiences,
+                                     @Param("cursor") LocalDateTime cursor,
+                                     @Param("upTo") LocalDateTime upTo,
+                                     @Param("userId") Long userId);
+
+    // Unread audience announcements for every student user — rows of [userId, count].
+    // Audiences: ALL_STUDENTS, ALL, CLASS:<standard>, STUDENT:<students.id> (student linked by students.user_id)
+    @Query(value = "SELECT u.id, COUNT(a.id) FROM users u " +
+            "LEFT JOIN students s ON s.user_id = u.id " +
+            "JOIN announcements a ON a.target_audience IN " +
+            "     ('ALL_STUDENTS', 'ALL', 'CLASS:' || s.standard, 'STUDENT:' || s.id) " +
+            "LEFT JOIN announcement_read_cursors c ON c.user_id = u.id " +
+            "LEFT JOIN announcement_reads r ON r.user_id = u.id AND r.announcement_id = a.id " +
+            "WHERE u.role = 'STUDENT' AND r.id IS NULL " +
+            "AND a.publish_date > COALESCE(c.last_read_at, TIMESTAMP '1970-01-01 00:00:00') " +
+            "GROUP BY u.id",
+            nativeQuery = true)
+    List<Object[]> countUnreadGroupedByStudentUser();
 }
@@ -0,0 +1,51 @@
+package com.EduPay.repository;
+
+import com.EduPay.model.FeeAssignmentRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface FeeAssignmentRunRepository extends JpaRepository<FeeAssignmentRun, Long> {
+
+    List<FeeAssignmentRun> findByStatusOrderByStartedAtDesc(String status);
+
+    // Resume claim: a FAILED run, or a RUNNING one whose owner stopped committing chunks.
+    // Of two concurrent resumes only one gets 1 back
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE fee_assignment_runs SET status = 'RUNNING', owner = :owner, heartbeat_at = :now " +
+            "WHERE id = :id AND (status = 'FAILED' " +
+            "OR (status = 'RUNNING' AND (heartbeat_at IS NULL OR heartbeat_at < :staleBefore)))",
+            nativeQuery = true)
+    int claim(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("now") LocalDateTime now,
+              @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Chunk progress; 0 when the run has been claimed by another owner (the chunk then rolls back)
+    @Modifying
+    @Query(value = "UPDATE fee_assignment_runs SET last_student_pk = :lastStudentPk, " +
+            "assigned_count = assigned_count + :inserted, heartbeat_at = :now " +
+            "WHERE id = :id AND owner = :owner AND status = 'RUNNING'",
+            nativeQuery = true)
+    int advance(@Param("id") Long id,
+                @Param("owner") String owner,
+                @Param("lastStudentPk") Long lastStudentPk,
+                @Param("inserted") int inserted,
+                @Param("now") LocalDateTime now);
+
+    // RUNNING → COMPLETED / FAILED, only by the current owner
+    @Modifying
+    @Query(value = "UPDATE fee_assignment_runs SET status = :status, finished_at = :finishedAt " +
+            "WHERE id = :id AND owner = :owner AND status = 'RUNNING'",
+            nativeQuery = true)
+    int finish(@Param("id") Long id,
+               @Param("owner") String owner,
+               @Param("status") String status,
+               @Param("finishedAt") LocalDateTime finishedAt);
+}
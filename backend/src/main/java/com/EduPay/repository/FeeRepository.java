@@ -18,6 +18,7 @@ public interface FeeRepository extends JpaRepository<Fee, Long> {
 
     List<Fee> findByStudentId(Long studentId);
     Optional<Fee> findByStudentIdAndStatus(Long studentId, String status);
+    List<Fee> findByStudentIdAndOutstandingAmountGreaterThan(Long studentId, Double amount);
     List<Fee> findByStudent(Student student);
 
     // All fees for students in a given standard string (e.g. "10")
@@ -36,4 +37,70 @@ public interface FeeRepository extends JpaRepository<Fee, Long> {
     @Query("SELECT f FROM Fee f WHERE f.student.standard = :standard AND f.dueDate < :today AND f.outstandingAmount > 0")
     List<Fee> findOverdueFeesByStandard(@Param("standard") String standard,
                                         @Param("today") LocalDate today);
+
+    // Every fee with an outstanding balance, with its student fetched in the same query (reminder run)
+    @Query("SELECT f FROM Fee f JOIN FETCH f.student s WHERE f.outstandingAmount > 0 ORDER BY s.id, f.dueDate")
+    List<Fee> findAllOutstandingWithStudent();
+
+    // Set-based bulk assignment: one INSERT ... SELECT for a keyset chunk of students (afterId, upToId]
+    // standard = null → every student in the chunk; otherwise only that class
+    @Modifying
+    @Query(value = "INSERT INTO fees (fee_type, amount, amount_paid, outstanding_amount, due_date, status, student_id) " +
+            "SELECT :feeType, :amount, 0, :amount, :dueDate, 'Pending', s.id FROM students s " +
+            "WHERE s.id > :afterId AND s.id <= :upToId " +
+            "AND (CAST(:standard AS varchar) IS NULL OR s.standard = :standard)",
+            nativeQuery = true)
+    int bulkAssignFee(@Param("feeType") String feeType,
+                      @Param("amount") Double amount,
+                      @Param("dueDate") LocalDate dueDate,
+                      @Param("standard") String standard,
+                      @Param("afterId") Long afterId,
+                      @Param("upToId") Long upToId);
+
+    // Atomic payment application: the increment and the overpayment guard run in one row update,
+    // so concurrent payments against the same fee serialize on the row lock instead of overwriting
+    // each other's read-modify-write. Returns 0 when the fee is missing, belongs to another
+    // student, or has less than :amount outstanding.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE fees SET amount_paid = amount_paid + :amount, " +
+            "outstanding_amount = outstanding_amount - :amount, " +
+            "status = CASE WHEN outstanding_amount - :amount <= 0 THEN 'Paid' ELSE 'Partially Paid' END " +
+            "WHERE id = :feeId AND student_id = :studentPk AND outstanding_amount >= :amount",
+            nativeQuery = true)
+    int applyPayment(@Param("feeId") Long feeId,
+                     @Param("studentPk") Long studentPk,
+                     @Param("amount") double amount);
+
+    // Set-based late charge: adds round(outstanding * rate, 2) to every overdue fee in scope that
+    // has not already been charged today, and returns how many rows were charged and the sum added.
+    // The per-student charge totals are added to student_balances in the same statement.
+    // standard / studentPk = null → no filter on that dimension
+    @Query(value = "WITH charged AS (" +
+            "  UPDATE fees f SET amount = f.amount + c.charge, " +
+            "         outstanding_amount = f.outstanding_amount + c.charge, " +
+            "         status = 'Overdue', last_late_charge_date = :today " +
+            "  FROM (SELECT id, ROUND(CAST(outstanding_amount * :rate AS numeric), 2) AS charge FROM fees " +
+            "        WHERE due_date < :today AND outstanding_amount > 0 " +
+            "          AND (last_late_charge_date IS NULL OR last_late_charge_date < :today) " +
+            "          AND (CAST(:studentPk AS bigint) IS NULL OR student_id = :studentPk) " +
+            "          AND (CAST(:standard AS varchar) IS NULL OR student_id IN " +
+            "               (SELECT s.id FROM students s WHERE s.standard = :standard))) c " +
+            "  WHERE f.id = c.id RETURNING f.student_id, c.charge), " +
+            "balances AS (" +
+            "  UPDATE student_balances b SET total_billed = b.total_billed + t.charge, " +
+            "         outstanding = b.outstanding + t.charge, updated_at = now() " +
+            "  FROM (SELECT student_id, SUM(charge) AS charge FROM charged GROUP BY student_id) t " +
+            "  WHERE b.student_id = t.student_id) " +
+            "SELECT COUNT(*) AS processed, CAST(COALESCE(SUM(charge), 0) AS double precision) AS \"totalCharge\" " +
+            "FROM charged",
+            nativeQuery = true)
+    LateChargeTotals applyLateCharge(@Param("today") LocalDate today,
+                                     @Param("rate") double rate,
+                                     @Param("standard") String standard,
+                                     @Param("studentPk") Long studentPk);
+
+    interface LateChargeTotals {
+        Long getProcessed();
+        Double getTotalCharge();
+    }
 }
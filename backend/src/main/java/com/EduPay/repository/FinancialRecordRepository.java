@@ -1,15 +1,83 @@
 package com.EduPay.repository;
 
 import com.EduPay.model.FinancialRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface FinancialRecordRepository extends JpaRepository<FinancialRecord, Long> {
     List<FinancialRecord> findByType(String type);
     List<FinancialRecord> findByCategory(String category);
     List<FinancialRecord> findByRecordDateBetween(LocalDate startDate, LocalDate endDate);
+
+    // Ledger totals in one pass — rows of [type, category, sum(amount)]
+    @Query("SELECT UPPER(r.type), r.category, SUM(r.amount) FROM FinancialRecord r " +
+            "GROUP BY UPPER(r.type), r.category")
+    List<Object[]> sumAmountByTypeAndCategory();
+
+    // Recent activity: LIMIT 10 scan of idx_financial_records_date
+    List<FinancialRecord> findTop10ByOrderByRecordDateDescIdDesc();
+
+    // Export: forward-only cursor over plain column tuples (no managed entities);
+    // must be consumed inside a transaction.
+    // Columns: id, record_date, type, category, amount, notes
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r.id, r.recordDate, r.type, r.category, r.amount, r.notes FROM FinancialRecord r ORDER BY r.id")
+    Stream<Object[]> streamForExport();
+
+    // Composable filters (null = not filtered) with keyset paging on (recordDate, id).
+    // afterDate / afterId is the last row of the previous page (null on the first page).
+    @Query("SELECT r FROM FinancialRecord r " +
+            "WHERE (:type IS NULL OR r.type = :type) " +
+            "AND (:category IS NULL OR r.category = :category) " +
+            "AND (:startDate IS NULL OR r.recordDate >= :startDate) " +
+            "AND (:endDate IS NULL OR r.recordDate <= :endDate) " +
+            "AND (:minAmount IS NULL OR r.amount >= :minAmount) " +
+            "AND (:maxAmount IS NULL OR r.amount <= :maxAmount) " +
+            "AND (:afterDate IS NULL OR r.recordDate < :afterDate " +
+            "     OR (r.recordDate = :afterDate AND r.id < :afterId)) " +
+            "ORDER BY r.recordDate DESC, r.id DESC")
+    List<FinancialRecord> searchNewestFirst(@Param("type") String type,
+                                         @Param("category") String category,
+                                         @Param("startDate") LocalDate startDate,
+                                         @Param("endDate") LocalDate endDate,
+                                         @Param("minAmount") BigDecimal minAmount,
+                                         @Param("maxAmount") BigDecimal maxAmount,
+                                         @Param("afterDate") LocalDate afterDate,
+                                         @Param("afterId") Long afterId,
+                                         Limit limit);
+
+    @Query("SELECT r FROM FinancialRecord r " +
+            "WHERE (:type IS NULL OR r.type = :type) " +
+            "AND (:category IS NULL OR r.category = :category) " +
+            "AND (:startDate IS NULL OR r.recordDate >= :startDate) " +
+            "AND (:endDate IS NULL OR r.recordDate <= :endDate) " +
+            "AND (:minAmount IS NULL OR r.amount >= :minAmount) " +
+            "AND (:maxAmount IS NULL OR r.amount <= :maxAmount) " +
+            "AND (:afterDate IS NULL OR r.recordDate > :afterDate " +
+            "     OR (r.recordDate = :afterDate AND r.id > :afterId)) " +
+            "ORDER BY r.recordDate ASC, r.id ASC")
+    List<FinancialRecord> searchOldestFirst(@Param("type") String type,
+                                        @Param("category") String category,
+                                        @Param("startDate") LocalDate startDate,
+                                        @Param("endDate") LocalDate endDate,
+                                        @Param("minAmount") BigDecimal minAmount,
+                                        @Param("maxAmount") BigDecimal maxAmount,
+                                        @Param("afterDate") LocalDate afterDate,
+                                        @Param("afterId") Long afterId,
+                                        Limit limit);
 }
@@ -0,0 +1,56 @@
+package com.EduPay.repository;
+
+import com.EduPay.model.FinancialRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface FinancialRollupRepository extends JpaRepository<FinancialRollup, Long> {
+
+    // Adds a (possibly negative) delta to one bucket, creating it on first use
+    @Modifying
+    @Query(value = "INSERT INTO financial_rollups (granularity, bucket_start, type, category, total, record_count) " +
+            "VALUES (:granularity, :bucketStart, :type, :category, :amount, :count) " +
+            "ON CONFLICT (granularity, bucket_start, type, category) DO UPDATE SET " +
+            "total = financial_rollups.total + EXCLUDED.total, " +
+            "record_count = financial_rollups.record_count + EXCLUDED.record_count",
+            nativeQuery = true)
+    int addToBucket(@Param("granularity") String granularity,
+                    @Param("bucketStart") LocalDate bucketStart,
+                    @Param("type") String type,
+                    @Param("category") String category,
+                    @Param("amount") BigDecimal amount,
+                    @Param("count") long count);
+
+    @Modifying
+    @Query(value = "DELETE FROM financial_rollups", nativeQuery = true)
+    int deleteAllBuckets();
+
+    // Backfill: every bucket of one granularity ('DAY' | 'MONTH') in a single INSERT ... SELECT
+    @Modifying
+    @Query(value = "INSERT INTO financial_rollups (granularity, bucket_start, type, category, total, record_count) " +
+            "SELECT :granularity, CAST(date_trunc(LOWER(:granularity), record_date) AS date), " +
+            "UPPER(type), category, SUM(amount), COUNT(*) " +
+            "FROM financial_records " +
+            "GROUP BY CAST(date_trunc(LOWER(:granularity), record_date) AS date), UPPER(type), category",
+            nativeQuery = true)
+    int backfill(@Param("granularity") String granularity);
+
+    @Query("SELECT r FROM FinancialRollup r WHERE r.granularity = :granularity " +
+            "AND r.bucketStart BETWEEN :from AND :to AND r.recordCount > 0 " +
+            "AND (:type IS NULL OR r.type = :type) " +
+            "AND (:category IS NULL OR r.category = :category) " +
+            "ORDER BY r.bucketStart, r.type, r.category")
+    List<FinancialRollup> findSeries(@Param("granularity") String granularity,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to,
+                                     @Param("type") String type,
+                                     @Param("category") String category);
+}
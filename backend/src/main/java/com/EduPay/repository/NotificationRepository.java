@@ -1,9 +1,16 @@
 package com.EduPay.repository;
 
+import com.EduPay.dto.InboxItemDto;
 import com.EduPay.model.Notification;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -18,4 +25,44 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     List<Notification> findByUserIdAndIsReadFalseOrderByCreatedAtDesc(Long userId);
 
     long countByUserIdAndIsReadFalse(Long userId);
+
+    // Unread personal notifications per user — rows of [userId, count]
+    @Query("SELECT n.userId, COUNT(n) FROM Notification n WHERE n.isRead = false GROUP BY n.userId")
+    List<Object[]> countUnreadGroupedByUser();
+
+    // Bulk read receipts — each is one UPDATE returning the number of rows flipped to read
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.userId = :userId AND n.isRead = false")
+    int markAllRead(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true " +
+            "WHERE n.userId = :userId AND n.isRead = false AND n.createdAt <= :upTo")
+    int markReadUpTo(@Param("userId") Long userId, @Param("upTo") LocalDateTime upTo);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true " +
+            "WHERE n.userId = :userId AND n.isRead = false AND n.id IN :ids")
+    int markReadByIds(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+    // Keyset feed page: rows strictly after the cursor (before, tieId) in (createdAt DESC, id DESC) order
+    @Query("SELECT new com.EduPay.dto.InboxItemDto(n.id, CAST(NULL AS Long), 'NOTIFICATION', " +
+            "n.title, n.message, n.type, n.isRead, n.createdAt) " +
+            "FROM Notification n WHERE n.userId = :userId " +
+            "AND (n.createdAt < :before OR (n.createdAt = :before AND n.id < :tieId)) " +
+            "ORDER BY n.createdAt DESC, n.id DESC")
+    List<InboxItemDto> findFeedPage(@Param("userId") Long userId,
+                                    @Param("before") LocalDateTime before,
+                                    @Param("tieId") Long tieId,
+                                    Limit limit);
+
+    @Query("SELECT new com.EduPay.dto.InboxItemDto(n.id, CAST(NULL AS Long), 'NOTIFICATION', " +
+            "n.title, n.message, n.type, n.isRead, n.createdAt) " +
+            "FROM Notification n WHERE n.userId = :userId AND n.isRead = false " +
+            "AND (n.createdAt < :before OR (n.createdAt = :before AND n.id < :tieId)) " +
+            "ORDER BY n.createdAt DESC, n.id DESC")
+    List<InboxItemDto> findUnreadFeedPage(@Param("userId") Long userId,
+                                          @Param("before") LocalDateTime before,
+                                          @Param("tieId") Long tieId,
+                                          Limit limit);
 }
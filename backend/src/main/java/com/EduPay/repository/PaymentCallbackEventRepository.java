@@ -0,0 +1,49 @@
+package com.EduPay.repository;
+
+import com.EduPay.model.PaymentCallbackEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentCallbackEventRepository extends JpaRepository<PaymentCallbackEvent, Long> {
+
+    // Idempotent enqueue: 1 = accepted, 0 = duplicate of an already received callback
+    @Modifying
+    @Query(value = "INSERT INTO payment_callback_events " +
+            "(dedup_key, gateway_payment_id, gateway_order_id, signature, gateway_status, error_message, " +
+            " state, attempts, received_at, next_attempt_at) " +
+            "VALUES (:dedupKey, :paymentId, :orderId, :signature, :status, :errorMessage, 'QUEUED', 0, " +
+            "        :receivedAt, :receivedAt) " +
+            "ON CONFLICT (dedup_key) DO NOTHING",
+            nativeQuery = true)
+    int enqueue(@Param("dedupKey") String dedupKey,
+                @Param("paymentId") String paymentId,
+                @Param("orderId") String orderId,
+                @Param("signature") String signature,
+                @Param("status") String status,
+                @Param("errorMessage") String errorMessage,
+                @Param("receivedAt") LocalDateTime receivedAt);
+
+    // Claims up to :batchSize queued events that are due (next_attempt_at reached), plus PROCESSING ones
+    // whose worker died before :staleBefore; SKIP LOCKED lets concurrent workers claim disjoint batches
+    @Query(value = "WITH claimed AS (" +
+            "  UPDATE payment_callback_events SET state = 'PROCESSING', claimed_at = :now " +
+            "  WHERE id IN (SELECT id FROM payment_callback_events " +
+            "               WHERE (state = 'QUEUED' AND (next_attempt_at IS NULL OR next_attempt_at <= :now)) " +
+            "                  OR (state = 'PROCESSING' AND claimed_at < :staleBefore) " +
+            "               ORDER BY id LIMIT :batchSize FOR UPDATE SKIP LOCKED) " +
+            "  RETURNING id) " +
+            "SELECT id FROM claimed ORDER BY id",
+            nativeQuery = true)
+    List<Long> claimBatch(@Param("batchSize") int batchSize,
+                          @Param("now") LocalDateTime now,
+                          @Param("staleBefore") LocalDateTime staleBefore);
+
+    long countByState(String state);
+}
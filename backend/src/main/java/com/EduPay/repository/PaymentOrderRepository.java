@@ -0,0 +1,68 @@
+package com.EduPay.repository;
+
+import com.EduPay.model.PaymentOrder;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Long> {
+
+    // Unique index lookup (uk_payment_orders_gateway_order)
+    Optional<PaymentOrder> findByGatewayOrderId(String gatewayOrderId);
+
+    // → PAID exactly once. A success may still arrive after the order was marked FAILED
+    // (student retried on the same order) or EXPIRED by reconciliation — the gateway has
+    // the money either way. Of two callbacks racing for the same order, only the one whose
+    // update returns 1 goes on to apply the payment
+    @Modifying
+    @Query(value = "UPDATE payment_orders SET status = 'PAID', gateway_payment_id = :paymentId, " +
+            "completed_at = :completedAt WHERE id = :id AND status IN ('CREATED', 'FAILED', 'EXPIRED')",
+            nativeQuery = true)
+    int settlePaid(@Param("id") Long id,
+                   @Param("paymentId") String paymentId,
+                   @Param("completedAt") LocalDateTime completedAt);
+
+    // CREATED → FAILED; a failure never overrides a later state
+    @Modifying
+    @Query(value = "UPDATE payment_orders SET status = 'FAILED', gateway_payment_id = :paymentId, " +
+            "completed_at = :completedAt WHERE id = :id AND status = 'CREATED'",
+            nativeQuery = true)
+    int settleFailed(@Param("id") Long id,
+                     @Param("paymentId") String paymentId,
+                     @Param("completedAt") LocalDateTime completedAt);
+
+    // Current status / payment id straight from the table (bypasses the persistence context)
+    @Query("SELECT o.status, o.gatewayPaymentId FROM PaymentOrder o WHERE o.id = :id")
+    List<Object[]> findSettlement(@Param("id") Long id);
+
+    // Reconciliation scan: unsettled orders created before :createdBefore, keyset-paged by id
+    List<PaymentOrder> findByStatusAndCreatedAtBeforeAndIdGreaterThanOrderByIdAsc(String status,
+                                                                                   LocalDateTime createdBefore,
+                                                                                   Long afterId,
+                                                                                   Limit limit);
+
+    // Records a failed gateway status lookup on a still unsettled order
+    @Modifying
+    @Query(value = "UPDATE payment_orders SET reconcile_failures = COALESCE(reconcile_failures, 0) + 1, " +
+            "last_reconcile_error = :error WHERE id = :id AND status = 'CREATED'",
+            nativeQuery = true)
+    int recordReconcileFailure(@Param("id") Long id, @Param("error") String error);
+
+    // Batch transition for orders the gateway reports as failed / that were never paid in time
+    @Modifying
+    @Query(value = "UPDATE payment_orders SET status = :status, completed_at = :completedAt " +
+            "WHERE id IN (:ids) AND status = 'CREATED'",
+            nativeQuery = true)
+    int settleAll(@Param("ids") Collection<Long> ids,
+                  @Param("status") String status,
+                  @Param("completedAt") LocalDateTime completedAt);
+}
@@ -1,11 +1,16 @@
 package com.EduPay.repository;
 
 import com.EduPay.model.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -22,4 +27,16 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
 
     List<Payment> findByRecordedById(Long recordedById);
+
+    // Export: forward-only cursor over plain column tuples; must be consumed inside a transaction.
+    // Columns: id, transaction_id, payment_date, amount, payment_method, status,
+    //          gateway_payment_id, gateway_order_id, student_id, recorded_by_user_id
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.id, p.transactionId, p.paymentDate, p.amount, p.paymentMethod, p.status, " +
+            "p.gatewayPaymentId, p.gatewayOrderId, s.studentId, rb.id " +
+            "FROM Payment p JOIN p.student s LEFT JOIN p.recordedBy rb ORDER BY p.id")
+    Stream<Object[]> streamForExport();
 }
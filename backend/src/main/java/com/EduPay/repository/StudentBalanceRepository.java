@@ -0,0 +1,81 @@
+package com.EduPay.repository;
+
+import com.EduPay.model.StudentBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+/**
+ * Writes to the student_balances projection. Each statement runs in the
+ * caller's transaction, next to the fee change it mirrors.
+ */
+@Repository
+public interface StudentBalanceRepository extends JpaRepository<StudentBalance, Long> {
+
+    // One new fee of :amount for every student in the keyset chunk (afterId, upToId] — mirrors FeeRepository.bulkAssignFee
+    @Modifying
+    @Query(value = "INSERT INTO student_balances AS b " +
+            "(student_id, total_billed, total_paid, outstanding, earliest_due_date, pending_fee_count, updated_at) " +
+            "SELECT s.id, :amount, 0, :amount, :dueDate, 1, now() FROM students s " +
+            "WHERE s.id > :afterId AND s.id <= :upToId " +
+            "AND (CAST(:standard AS varchar) IS NULL OR s.standard = :standard) " +
+            "ON CONFLICT (student_id) DO UPDATE SET " +
+            "total_billed = b.total_billed + EXCLUDED.total_billed, " +
+            "outstanding = b.outstanding + EXCLUDED.outstanding, " +
+            "earliest_due_date = LEAST(b.earliest_due_date, EXCLUDED.earliest_due_date), " +
+            "pending_fee_count = b.pending_fee_count + 1, updated_at = now()",
+            nativeQuery = true)
+    int addFeeForChunk(@Param("amount") Double amount,
+                       @Param("dueDate") LocalDate dueDate,
+                       @Param("standard") String standard,
+                       @Param("afterId") Long afterId,
+                       @Param("upToId") Long upToId);
+
+    // One new fee for one student
+    @Modifying
+    @Query(value = "INSERT INTO student_balances AS b " +
+            "(student_id, total_billed, total_paid, outstanding, earliest_due_date, pending_fee_count, updated_at) " +
+            "VALUES (:studentPk, :amount, 0, :amount, :dueDate, 1, now()) " +
+            "ON CONFLICT (student_id) DO UPDATE SET " +
+            "total_billed = b.total_billed + EXCLUDED.total_billed, " +
+            "outstanding = b.outstanding + EXCLUDED.outstanding, " +
+            "earliest_due_date = LEAST(b.earliest_due_date, EXCLUDED.earliest_due_date), " +
+            "pending_fee_count = b.pending_fee_count + 1, updated_at = now()",
+            nativeQuery = true)
+    int addFee(@Param("studentPk") Long studentPk,
+               @Param("amount") Double amount,
+               @Param("dueDate") LocalDate dueDate);
+
+    // Payment against the student's fees. Runs after the fee row is flushed, so the
+    // earliest due date / pending count are re-derived from the student's open fees.
+    @Modifying
+    @Query(value = "UPDATE student_balances SET " +
+            "total_paid = total_paid + :amount, outstanding = outstanding - :amount, " +
+            "earliest_due_date = (SELECT MIN(f.due_date) FROM fees f " +
+            "                     WHERE f.student_id = :studentPk AND f.outstanding_amount > 0), " +
+            "pending_fee_count = (SELECT COUNT(*) FROM fees f " +
+            "                     WHERE f.student_id = :studentPk AND f.outstanding_amount > 0), " +
+            "updated_at = now() " +
+            "WHERE student_id = :studentPk",
+            nativeQuery = true)
+    int applyPayment(@Param("studentPk") Long studentPk, @Param("amount") Double amount);
+
+    // Full rebuild from the fees table (startup / admin repair)
+    @Modifying
+    @Query(value = "INSERT INTO student_balances AS b " +
+            "(student_id, total_billed, total_paid, outstanding, earliest_due_date, pending_fee_count, updated_at) " +
+            "SELECT f.student_id, SUM(f.amount), SUM(f.amount_paid), SUM(f.outstanding_amount), " +
+            "MIN(f.due_date) FILTER (WHERE f.outstanding_amount > 0), " +
+            "COUNT(*) FILTER (WHERE f.outstanding_amount > 0), now() " +
+            "FROM fees f GROUP BY f.student_id " +
+            "ON CONFLICT (student_id) DO UPDATE SET " +
+            "total_billed = EXCLUDED.total_billed, total_paid = EXCLUDED.total_paid, " +
+            "outstanding = EXCLUDED.outstanding, earliest_due_date = EXCLUDED.earliest_due_date, " +
+            "pending_fee_count = EXCLUDED.pending_fee_count, updated_at = now()",
+            nativeQuery = true)
+    int rebuildAll();
+}
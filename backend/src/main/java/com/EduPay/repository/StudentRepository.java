@@ -2,6 +2,9 @@ package com.EduPay.repository;
 
 import com.EduPay.model.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -29,5 +32,36 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
 
     Optional<Student> findByName(String username);
 
+    // Student linked to a login account (unique index on students.user_id)
+    Optional<Student> findByUserId(Long userId);
+
+    // Backfill of students.user_id for rows created before the link existed.
+    // Accounts named after the student id (username = student_id) are linked first…
+    @Modifying
+    @Query(value = "UPDATE students s SET user_id = u.id FROM users u " +
+            "WHERE s.user_id IS NULL AND u.role = 'STUDENT' AND u.username = s.student_id " +
+            "AND NOT EXISTS (SELECT 1 FROM students o WHERE o.user_id = u.id)",
+            nativeQuery = true)
+    int linkAccountsByStudentId();
+
+    // …then accounts named after the student (AdminService convention), where the name is unambiguous
+    @Modifying
+    @Query(value = "UPDATE students s SET user_id = u.id FROM users u " +
+            "WHERE s.user_id IS NULL AND u.role = 'STUDENT' AND u.username = s.name " +
+            "AND NOT EXISTS (SELECT 1 FROM students o WHERE o.user_id = u.id) " +
+            "AND (SELECT COUNT(*) FROM students d WHERE d.name = s.name) = 1",
+            nativeQuery = true)
+    int linkAccountsByName();
+
     List<Student> findByStandard(String standard);
+
+    // Upper students.id bound of the next keyset chunk after :afterId (null when nothing is left)
+    // standard = null → all students; otherwise only that class
+    @Query(value = "SELECT MAX(id) FROM (SELECT id FROM students WHERE id > :afterId " +
+            "AND (CAST(:standard AS varchar) IS NULL OR standard = :standard) " +
+            "ORDER BY id LIMIT :limit) chunk",
+            nativeQuery = true)
+    Long findChunkUpperBound(@Param("afterId") Long afterId,
+                             @Param("standard") String standard,
+                             @Param("limit") int limit);
 }
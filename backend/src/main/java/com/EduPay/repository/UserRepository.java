@@ -2,12 +2,18 @@ package com.EduPay.repository;
 
 import com.EduPay.model.User;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull; // Import this
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 // ... other imports ...
 
@@ -17,10 +23,27 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     @NonNull
     Optional<User> findByUsername(String username); // Add @NonNull
+
+    // [id, tokenVersion] of every user whose tokens were ever revoked — seeds TokenRevocationRegistry
+    @Query("SELECT u.id, u.tokenVersion FROM User u WHERE u.tokenVersion > 0")
+    List<Object[]> findRevokedTokenVersions();
+
      @Override // No need to override findById explicitly unless you add custom logic
     @NonNull Optional<User> findById(@NonNull Long aLong); // If you keep it, add @NonNull
 
     boolean existsByUsername(@NonNull String username);
 
     List<User> findByRole(String role);
+
+    // Recipient resolution through the students.user_id link — ids only, one round-trip, no entity hydration
+    @Query("SELECT s.userId FROM Student s WHERE s.userId IS NOT NULL AND s.standard = :standard")
+    List<Long> findUserIdsByStudentStandard(@Param("standard") String standard);
+
+    @Query("SELECT s.userId FROM Student s WHERE s.userId IS NOT NULL AND s.studentId = :studentId")
+    List<Long> findUserIdsByStudentId(@Param("studentId") String studentId);
+
+    // Streams every student user id with a forward-only cursor; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.id FROM User u WHERE u.role = 'STUDENT'")
+    Stream<Long> streamStudentUserIds();
 }
\ No newline at end of file
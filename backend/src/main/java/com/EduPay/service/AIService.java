@@ -1,25 +1,22 @@
 package com.EduPay.service;
 
-import com.EduPay.config.GeminiKeyRotator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.*;
 
 import com.EduPay.model.Fee;
 import com.EduPay.model.Student;
+import com.EduPay.model.StudentBalance;
 import com.EduPay.repository.FeeRepository;
 import com.EduPay.repository.StudentRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 /**
- * Core AI Service - calls the native Gemini REST API directly.
+ * Core AI Service - calls the native Gemini REST API directly (via GeminiClient).
  * This bypasses Spring AI's OpenAI compatibility layer to avoid
  * the restrictive OpenAI-endpoint quota limits.
  */
@@ -28,88 +25,29 @@ public class AIService {
 
     private static final Logger log = LoggerFactory.getLogger(AIService.class);
 
-    @Value("${spring.ai.openai.chat.options.model:gemini-2.0-flash}")
-    private String model;
-
-    @Value("${edupay.ai.system-prompt:You are EduPay AI Assistant.}")
-    private String systemPrompt;
-
     private final StudentRepository studentRepository;
     private final FeeRepository feeRepository;
-    private final GeminiKeyRotator geminiKeyRotator;
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeminiClient geminiClient;
+    private final StudentBalanceService studentBalanceService;
+    private final CurrentUserResolver currentUserResolver;
 
-    public AIService(StudentRepository studentRepository, FeeRepository feeRepository, GeminiKeyRotator geminiKeyRotator) {
+    public AIService(StudentRepository studentRepository, FeeRepository feeRepository, GeminiClient geminiClient,
+                     StudentBalanceService studentBalanceService, CurrentUserResolver currentUserResolver) {
         this.studentRepository = studentRepository;
         this.feeRepository = feeRepository;
-        this.geminiKeyRotator = geminiKeyRotator;
-    }
-
-    /**
-     * Calls the native Gemini generateContent REST API directly.
-     */
-    private String callGeminiNative(String prompt) {
-        String currentKey = geminiKeyRotator.nextKey();
-        String url = String.format(
-                "https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent?key=%s",
-                model, currentKey);
-
-        // Build the request body for native Gemini API
-        Map<String, Object> requestBody = new HashMap<>();
-
-        // System instruction
-        Map<String, Object> systemInstruction = new HashMap<>();
-        List<Map<String, String>> systemParts = new ArrayList<>();
-        systemParts.add(Map.of("text", systemPrompt));
-        systemInstruction.put("parts", systemParts);
-        requestBody.put("systemInstruction", systemInstruction);
-
-        // User content
-        List<Map<String, Object>> contents = new ArrayList<>();
-        Map<String, Object> userContent = new HashMap<>();
-        userContent.put("role", "user");
-        List<Map<String, String>> userParts = new ArrayList<>();
-        userParts.add(Map.of("text", prompt));
-        userContent.put("parts", userParts);
-        contents.add(userContent);
-        requestBody.put("contents", contents);
-
-        // Generation config
-        Map<String, Object> genConfig = new HashMap<>();
-        genConfig.put("temperature", 0.7);
-        genConfig.put("maxOutputTokens", 1024);
-        requestBody.put("generationConfig", genConfig);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                JsonNode candidates = root.path("candidates");
-                if (candidates.isArray() && !candidates.isEmpty()) {
-                    return candidates.get(0).path("content").path("parts").get(0).path("text").asText();
-                }
-                return "AI returned an empty response.";
-            } else {
-                log.error("Gemini API returned status {}: {}", response.getStatusCode(), response.getBody());
-                return "AI Error: " + response.getStatusCode();
-            }
-        } catch (Exception e) {
-            log.error("Native Gemini API call failed: {}", e.getMessage(), e);
-            throw new RuntimeException("Gemini API error: " + e.getMessage());
-        }
+        this.geminiClient = geminiClient;
+        this.studentBalanceService = studentBalanceService;
+        this.currentUserResolver = currentUserResolver;
     }
 
     /**
      * Process a user's question with personalized student context.
+     *
+     * The student context is read here, on the calling (request) thread — it
+     * needs the request-scoped CurrentUserResolver and the DB. Only the Gemini
+     * round-trip is asynchronous.
      */
-    public Map<String, Object> chat(String question, String username) {
+    public CompletableFuture<Map<String, Object>> chat(String question, String username) {
         log.info("🤖 AI Chat request from user '{}': {}", username, question);
 
         // Get student-specific fee data for personalized responses
@@ -118,29 +56,29 @@ public class AIService {
         // Build the prompt with student context
         String augmentedPrompt = buildAugmentedPrompt(question, "", studentContext);
 
-        String answer;
         List<String> sources = Collections.emptyList();
-        try {
-            answer = callGeminiNative(augmentedPrompt);
-        } catch (Exception e) {
-            log.error("❌ AI call failed: {}", e.getMessage(), e);
-            answer = "API Error Details (for debugging): " + e.getMessage();
-        }
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("answer", answer);
-        response.put("sources", sources);
-
-        log.info("✅ AI response generated with {} sources", sources.size());
-        return response;
+        return geminiClient.generate(augmentedPrompt)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    log.error("❌ AI call failed: {}", cause.getMessage(), cause);
+                    return "API Error Details (for debugging): " + cause.getMessage();
+                })
+                .thenApply(answer -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("answer", answer);
+                    response.put("sources", sources);
+
+                    log.info("✅ AI response generated with {} sources", sources.size());
+                    return response;
+                });
     }
 
     /**
-     * Fetches the student's fee data to provide personalized context to the AI.
+     * Fetches the current student's fee data to provide personalized context to the AI.
      */
     private String getStudentContext(String username) {
         try {
-            Optional<Student> studentOpt = studentRepository.findByStudentId(username);
+            Optional<Student> studentOpt = currentUserResolver.student();
             if (studentOpt.isEmpty()) {
                 return "No student record found for this user.";
             }
@@ -157,14 +95,18 @@ public class AIService {
             if (fees.isEmpty()) {
                 sb.append("No fee records found.\n");
             } else {
-                double totalOutstanding = 0;
                 for (Fee fee : fees) {
                     sb.append(String.format("- %s: Total ₹%.2f, Paid ₹%.2f, Outstanding ₹%.2f, Due: %s, Status: %s%n",
                             fee.getFeeType(), fee.getAmount(), fee.getAmountPaid(),
                             fee.getOutstandingAmount(), fee.getDueDate(), fee.getStatus()));
-                    totalOutstanding += fee.getOutstandingAmount();
                 }
-                sb.append(String.format("\nTotal Outstanding: ₹%.2f\n", totalOutstanding));
+                StudentBalance balance = studentBalanceService.getBalance(student.getId());
+                sb.append(String.format("\nTotal Billed: ₹%.2f, Total Paid: ₹%.2f\n",
+                        balance.getTotalBilled(), balance.getTotalPaid()));
+                sb.append(String.format("Total Outstanding: ₹%.2f\n", balance.getOutstanding()));
+                if (balance.getEarliestDueDate() != null) {
+                    sb.append("Earliest Due Date: ").append(balance.getEarliestDueDate()).append("\n");
+                }
             }
 
             return sb.toString();
@@ -210,8 +152,7 @@ public class AIService {
         Student student = studentRepository.findById(studentId)
                 .orElseThrow(() -> new RuntimeException("Student not found with ID: " + studentId));
 
-        List<Fee> fees = feeRepository.findByStudent(student);
-        double totalOutstanding = fees.stream().mapToDouble(Fee::getOutstandingAmount).sum();
+        double totalOutstanding = studentBalanceService.getBalance(student.getId()).getOutstanding();
 
         StringBuilder prompt = new StringBuilder();
         prompt.append("You are an administrative assistant writing an official school notice to a student.\n");
@@ -237,10 +178,11 @@ public class AIService {
         prompt.append("3. Do not include signature blocks (like 'Sincerely, School Admin'). Just the message body.\n");
 
         try {
-            return callGeminiNative(prompt.toString());
-        } catch (Exception e) {
-            log.error("AI Notice Generation failed: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to generate notice via AI: " + e.getMessage());
+            return geminiClient.generate(prompt.toString()).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("AI Notice Generation failed: {}", cause.getMessage(), cause);
+            throw new RuntimeException("Failed to generate notice via AI: " + cause.getMessage());
         }
     }
 }
@@ -1,5 +1,6 @@
 package com.EduPay.service;
 
+import com.EduPay.config.TokenRevocationRegistry;
 import com.EduPay.dto.FeeDto;
 import com.EduPay.dto.StudentDto;
 import com.EduPay.model.Fee;
@@ -17,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional; // For transact
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 
@@ -28,15 +30,24 @@ public class AdminService {
     private final PaymentRepository paymentRepository;
     private final UserRepository userRepository; // To fetch admin user for linking
     private final PasswordEncoder passwordEncoder; // Inject PasswordEncoder
+    private final StudentBalanceService studentBalanceService;
+    private final FeePaymentService feePaymentService;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
 
     public AdminService(StudentRepository studentRepository, FeeRepository feeRepository,
                         PaymentRepository paymentRepository, UserRepository userRepository,
-                        PasswordEncoder passwordEncoder) { // Add PasswordEncoder to constructor
+                        PasswordEncoder passwordEncoder, // Add PasswordEncoder to constructor
+                        StudentBalanceService studentBalanceService,
+                        FeePaymentService feePaymentService,
+                        TokenRevocationRegistry tokenRevocationRegistry) {
         this.studentRepository = studentRepository;
         this.feeRepository = feeRepository;
         this.paymentRepository = paymentRepository;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder; // Initialize PasswordEncoder
+        this.studentBalanceService = studentBalanceService;
+        this.feePaymentService = feePaymentService;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
     }
 
     // --- Student Management ---
@@ -73,8 +84,6 @@ public class AdminService {
         student.setStandard(studentDto.getStandard());
         student.setAdmin(admin); // Link to the admin (now a User object)
 
-        Student savedStudent = studentRepository.save(student);
-
         // Create a corresponding User entity for the student
         User studentUser = new User();
         studentUser.setUsername(studentDto.getName()); // Student's name is the username
@@ -83,6 +92,8 @@ public class AdminService {
         studentUser.setRole("STUDENT"); // Set role to STUDENT
         userRepository.save(studentUser);
 
+        student.setUserId(studentUser.getId()); // Indexed user ↔ student link
+        Student savedStudent = studentRepository.save(student);
 
         return convertToDto(savedStudent);
     }
@@ -110,6 +121,7 @@ public class AdminService {
     public StudentDto updateStudent(Long id, StudentDto studentDto) {
         Student student = studentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Student not found with ID: " + id));
+        String previousName = student.getName();
 
         student.setName(studentDto.getName());
         student.setRollNo(studentDto.getRollNo());
@@ -118,9 +130,10 @@ public class AdminService {
         // Do not update studentId or admin here, as they are typically fixed or managed separately.
 
         // If mobile number (password) or name (username) changes, update the User entity as well
-        User studentUser = userRepository.findByUsername(student.getName()) // Find user by old name
-                .orElseThrow(() -> new RuntimeException("Corresponding user not found for student: " + student.getName()));
+        User studentUser = findStudentUser(student, previousName)
+                .orElseThrow(() -> new RuntimeException("Corresponding user not found for student: " + previousName));
 
+        tokenRevocationRegistry.revoke(studentUser); // credentials change: existing tokens are revoked
         studentUser.setUsername(studentDto.getName()); // Update username to new student name
         // Corrected: Hash the new mobile number to be the password
         studentUser.setPassword(passwordEncoder.encode(studentDto.getMobileNo()));
@@ -138,9 +151,41 @@ public class AdminService {
                 .orElseThrow(() -> new RuntimeException("Student not found with ID: " + id));
 
         // Delete the corresponding User entity for the student
-        userRepository.findByUsername(student.getName()).ifPresent(userRepository::delete);
+        findStudentUser(student, student.getName()).ifPresent(user -> {
+            tokenRevocationRegistry.revokeDeleted(user);
+            userRepository.delete(user);
+        });
 
         studentRepository.deleteById(id);
+        studentBalanceService.onStudentDeleted(id);
+    }
+
+    // --- User Management ---
+
+    /**
+     * Changes a user's role. Tokens carry the role, so existing ones are revoked
+     * once this transaction commits; empty if the user does not exist.
+     */
+    @Transactional
+    public Optional<User> updateUserRole(Long id, String role) {
+        return userRepository.findById(id).map(user -> {
+            user.setRole(role.toUpperCase());
+            tokenRevocationRegistry.revoke(user);
+            return userRepository.save(user);
+        });
+    }
+
+    /**
+     * Changes a user's status. Disabled accounts lose access as soon as this
+     * transaction commits; empty if the user does not exist.
+     */
+    @Transactional
+    public Optional<User> updateUserStatus(Long id, String status) {
+        return userRepository.findById(id).map(user -> {
+            user.setStatus(status.toUpperCase());
+            tokenRevocationRegistry.revoke(user);
+            return userRepository.save(user);
+        });
     }
 
     // --- Fee Management ---
@@ -170,6 +215,7 @@ public class AdminService {
         fee.setStudent(student);
 
         Fee savedFee = feeRepository.save(fee);
+        studentBalanceService.onFeeAdded(student.getId(), savedFee.getAmount(), savedFee.getDueDate());
         return convertToDto(savedFee);
     }
 
@@ -185,71 +231,67 @@ public class AdminService {
     }
 
 
-    @Transactional
+    /**
+     * Records a cash deposit against one fee. The fee is updated atomically by
+     * FeePaymentService and the whole deposit is retried on transient lock
+     * conflicts, so it can run concurrently with online callbacks for the same fee.
+     */
     public FeeDto recordCashPayment(Long studentId, Long feeId, Double amount) {
-        Student student = studentRepository.findById(studentId)
-                .orElseThrow(() -> new RuntimeException("Student not found with ID: " + studentId));
-
-        Fee fee = feeRepository.findById(feeId)
-                .orElseThrow(() -> new RuntimeException("Fee not found with ID: " + feeId));
-
-        // Ensure the fee belongs to the correct student (multi-tenancy check)
-        if (!fee.getStudent().getId().equals(studentId)) {
-            throw new RuntimeException("Fee does not belong to the specified student.");
-        }
+        return feePaymentService.inTransaction(() -> {
+            Student student = studentRepository.findById(studentId)
+                    .orElseThrow(() -> new RuntimeException("Student not found with ID: " + studentId));
 
-        if (amount <= 0) {
-            throw new RuntimeException("Payment amount must be positive.");
-        }
+            if (amount == null || amount <= 0) {
+                throw new RuntimeException("Payment amount must be positive.");
+            }
 
-        if (amount > fee.getOutstandingAmount()) {
-            throw new RuntimeException("Payment amount exceeds outstanding amount for this fee.");
-        }
+            // Ownership and the outstanding-amount check are enforced by the update itself
+            Fee updatedFee = feePaymentService.applyPayment(studentId, feeId, amount);
 
-        // Update fee details
-        fee.setAmountPaid(fee.getAmountPaid() + amount);
-        fee.setOutstandingAmount(fee.getOutstandingAmount() - amount);
+            // Create a new Payment record for the cash deposit
+            Payment payment = new Payment();
+            payment.setTransactionId("CASH-" + System.currentTimeMillis()); // Simple unique ID for cash
+            payment.setAmount(amount);
+            payment.setPaymentMethod("Cash");
+            payment.setPaymentDate(LocalDateTime.now());
+            payment.setStatus("Success");
+            payment.setStudent(student);
 
-        if (fee.getOutstandingAmount() <= 0) {
-            fee.setStatus("Paid");
-        } else {
-            fee.setStatus("Partially Paid");
-        }
-        Fee updatedFee = feeRepository.save(fee);
-
-        // Create a new Payment record for the cash deposit
-        Payment payment = new Payment();
-        payment.setTransactionId("CASH-" + System.currentTimeMillis()); // Simple unique ID for cash
-        payment.setAmount(amount);
-        payment.setPaymentMethod("Cash");
-        payment.setPaymentDate(LocalDateTime.now());
-        payment.setStatus("Success");
-        payment.setStudent(student);
-
-        // In a real app, get adminId from Spring Security context
-        Long currentAdminId = 1L; // Placeholder: Replace with actual admin ID from security context
-        User recordedByAdmin = userRepository.findById(currentAdminId)
-                .orElseThrow(() -> new RuntimeException("Admin user not found for recording cash payment."));
-        payment.setRecordedBy(recordedByAdmin);
+            // In a real app, get adminId from Spring Security context
+            Long currentAdminId = 1L; // Placeholder: Replace with actual admin ID from security context
+            User recordedByAdmin = userRepository.findById(currentAdminId)
+                    .orElseThrow(() -> new RuntimeException("Admin user not found for recording cash payment."));
+            payment.setRecordedBy(recordedByAdmin);
 
-        paymentRepository.save(payment);
+            paymentRepository.save(payment);
 
-        return convertToDto(updatedFee);
+            return convertToDto(updatedFee);
+        });
     }
 
     @Transactional
     public void payAllOutstandingFees(Long studentId) {
-        Student student = studentRepository.findById(studentId)
-                .orElseThrow(() -> new RuntimeException("Student not found with ID: " + studentId));
-        
-        List<Fee> fees = feeRepository.findByStudent(student);
+        if (!studentRepository.existsById(studentId)) {
+            throw new RuntimeException("Student not found with ID: " + studentId);
+        }
+        // Settled students are answered from the balance projection without touching their fees
+        if (studentBalanceService.getBalance(studentId).getOutstanding() <= 0) {
+            return;
+        }
+
+        List<Fee> fees = feeRepository.findByStudentIdAndOutstandingAmountGreaterThan(studentId, 0.0);
         for (Fee fee : fees) {
-            if (fee.getOutstandingAmount() > 0) {
-                recordCashPayment(studentId, fee.getId(), fee.getOutstandingAmount());
-            }
+            recordCashPayment(studentId, fee.getId(), fee.getOutstandingAmount());
         }
     }
 
+    // Login account of a student: through the students.user_id link, else (legacy, unlinked rows) by name
+    private Optional<User> findStudentUser(Student student, String name) {
+        return student.getUserId() != null
+                ? userRepository.findById(student.getUserId())
+                : userRepository.findByUsername(name);
+    }
+
     // --- Helper methods for DTO conversion ---
     private StudentDto convertToDto(Student student) {
         return new StudentDto(
@@ -1,32 +1,31 @@
 package com.EduPay.service;
 
-import com.EduPay.config.CustomUserDetails;
+import com.EduPay.config.WebSocketConfig;
 import com.EduPay.dto.AnnouncementDto;
+import com.EduPay.dto.BroadcastJobStatus;
 import com.EduPay.dto.BroadcastRequest;
 import com.EduPay.model.Announcement;
-import com.EduPay.model.Notification;
 import com.EduPay.model.Student;
 import com.EduPay.model.User;
 import com.EduPay.repository.AnnouncementRepository;
-import com.EduPay.repository.NotificationRepository;
 import com.EduPay.repository.StudentRepository;
 import com.EduPay.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for managing announcements.
@@ -36,9 +35,11 @@ import java.util.stream.Collectors;
  *   STUDENT → one specific student by studentId
  *
  * On each broadcast the announcement is:
- *   1. Persisted in the `announcements` table
- *   2. A Notification row created per recipient user
- *   3. Pushed via WebSocket to each recipient's topic
+ *   1. Persisted once in the `announcements` table with its target audience
+ *      (recipients see it through InboxService — fan-out on read)
+ *   2. Handed to BroadcastFanoutService, which in the background pushes it
+ *      via WebSocket — one frame on the class / all-students topic, or to
+ *      the recipient's own topic for STUDENT scope
  */
 @Service
 public class AnnouncementService {
@@ -48,19 +49,26 @@ public class AnnouncementService {
     private final AnnouncementRepository announcementRepository;
     private final UserRepository userRepository;
     private final StudentRepository studentRepository;
-    private final NotificationRepository notificationRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final BroadcastFanoutService broadcastFanoutService;
+    private final UnreadCounterService unreadCounterService;
+    private final CurrentUserResolver currentUserResolver;
+    private final TransactionTemplate readOnlyTransaction;
 
     public AnnouncementService(AnnouncementRepository announcementRepository,
                                UserRepository userRepository,
                                StudentRepository studentRepository,
-                               NotificationRepository notificationRepository,
-                               SimpMessagingTemplate messagingTemplate) {
+                               BroadcastFanoutService broadcastFanoutService,
+                               UnreadCounterService unreadCounterService,
+                               CurrentUserResolver currentUserResolver,
+                               PlatformTransactionManager transactionManager) {
         this.announcementRepository  = announcementRepository;
         this.userRepository          = userRepository;
         this.studentRepository       = studentRepository;
-        this.notificationRepository  = notificationRepository;
-        this.messagingTemplate       = messagingTemplate;
+        this.broadcastFanoutService  = broadcastFanoutService;
+        this.unreadCounterService    = unreadCounterService;
+        this.currentUserResolver     = currentUserResolver;
+        this.readOnlyTransaction     = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -73,10 +81,11 @@ public class AnnouncementService {
      *   CLASS   → students of the given standard
      *   STUDENT → one specific student
      *
-     * Also persists the announcement + per-user notifications + WebSocket push.
+     * Persists the announcement and returns a QUEUED fan-out job; the WebSocket
+     * pushes run in the background once this transaction commits.
      */
     @Transactional
-    public AnnouncementDto broadcast(BroadcastRequest req) {
+    public BroadcastJobStatus broadcast(BroadcastRequest req) {
         User creator = getCurrentUser();
         String priority  = req.getPriority()  != null ? req.getPriority()  : "INFO";
         String scopeType = req.getScopeType() != null ? req.getScopeType() : "ALL";
@@ -90,19 +99,35 @@ public class AnnouncementService {
         announcement.setContent(req.getMessage());
         announcement.setPublishDate(LocalDateTime.now());
         announcement.setTargetAudience(targetAudience);
+        announcement.setPriority(priority);
         announcement.setCreator(creator);
         Announcement saved = announcementRepository.save(announcement);
 
-        // Resolve recipient users
-        List<User> recipients = resolveRecipients(scopeType, req.getStandard(), req.getStudentId());
-        log.info("📢 Broadcasting '{}' [{}] → {} recipients", req.getTitle(), scopeType, recipients.size());
+        // ALL / CLASS go out as one frame on the shared audience topic; STUDENT stays per-user
+        String audienceTopic = switch (scopeType.toUpperCase()) {
+            case "CLASS"   -> WebSocketConfig.classTopic(String.valueOf(req.getStandard()));
+            case "STUDENT" -> null;
+            default        -> WebSocketConfig.ALL_STUDENTS_TOPIC;
+        };
 
-        // Push notification to each recipient
-        for (User recipient : recipients) {
-            persistAndPushNotification(recipient.getId(), req.getTitle(), req.getMessage(), priority, saved.getId());
-        }
+        // Queue the fan-out; recipients are resolved by the worker
+        BroadcastJobStatus job = broadcastFanoutService.register(
+                saved.getId(), req.getTitle(), req.getMessage(), priority, saved.getPublishDate(), audienceTopic,
+                () -> resolveRecipientIds(scopeType, req.getStandard(), req.getStudentId()));
+        log.info("📢 Broadcast '{}' [{}] queued as job {}", req.getTitle(), scopeType, job.getJobId());
 
-        return convertToDto(saved);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                broadcastFanoutService.start(job.getJobId());
+            }
+        });
+        return job;
+    }
+
+    /** Progress of a broadcast fan-out job. */
+    public BroadcastJobStatus getBroadcastStatus(String jobId) {
+        return broadcastFanoutService.getStatus(jobId);
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -121,6 +146,8 @@ public class AnnouncementService {
         announcement.setCreator(creator);
 
         Announcement saved = announcementRepository.save(announcement);
+        // Audience may reach any student inbox — let counters reload lazily
+        unreadCounterService.invalidateAll();
         return convertToDto(saved);
     }
 
@@ -131,7 +158,9 @@ public class AnnouncementService {
         announcement.setTitle(dto.getTitle());
         announcement.setContent(dto.getContent());
         announcement.setTargetAudience(dto.getTargetAudience());
-        return convertToDto(announcementRepository.save(announcement));
+        Announcement saved = announcementRepository.save(announcement);
+        unreadCounterService.invalidateAll();
+        return convertToDto(saved);
     }
 
     @Transactional
@@ -140,12 +169,13 @@ public class AnnouncementService {
             throw new RuntimeException("Announcement not found: " + id);
         }
         announcementRepository.deleteById(id);
+        unreadCounterService.invalidateAll();
     }
 
     /** All announcements created by the current admin, newest first. */
     public List<AnnouncementDto> getMyAnnouncements() {
         return announcementRepository
-                .findByCreatorId(getCurrentUser().getId())
+                .findByCreatorId(currentUserResolver.userId())
                 .stream()
                 .sorted((a, b) -> b.getPublishDate().compareTo(a.getPublishDate()))
                 .map(this::convertToDto)
@@ -172,15 +202,12 @@ public class AnnouncementService {
      *   - STUDENT:<id> (specifically them)
      */
     public List<AnnouncementDto> getAnnouncementsForCurrentStudent() {
-        Long currentUserId = getCurrentUserId();
-        if (currentUserId == null) {
+        if (currentUserResolver.principal() == null) {
             return announcementRepository.findByTargetAudience("ALL_STUDENTS")
                     .stream().map(this::convertToDto).collect(Collectors.toList());
         }
 
-        Optional<Student> studentOpt = studentRepository.findByName(
-                userRepository.findById(currentUserId)
-                        .map(User::getUsername).orElse(""));
+        Optional<Student> studentOpt = currentUserResolver.student();
 
         List<String> audiences = new ArrayList<>(Arrays.asList("ALL_STUDENTS", "ALL"));
         studentOpt.ifPresent(s -> {
@@ -211,71 +238,24 @@ public class AnnouncementService {
         };
     }
 
-    private List<User> resolveRecipients(String scopeType, Integer standard, String studentId) {
+    /**
+     * Resolves recipient user ids with a single join query per scope
+     * (students.user_id); ALL streams the ids with a cursor.
+     */
+    private List<Long> resolveRecipientIds(String scopeType, Integer standard, String studentId) {
         return switch (scopeType.toUpperCase()) {
-            case "CLASS" -> {
-                List<Student> classStudents = studentRepository.findByStandard(String.valueOf(standard));
-                yield classStudents.stream()
-                        .map(s -> userRepository.findByUsername(s.getStudentId()).orElse(null))
-                        .filter(u -> u != null)
-                        .collect(Collectors.toList());
-            }
-            case "STUDENT" -> {
-                Student s = studentRepository.findByStudentId(studentId)
-                        .orElseThrow(() -> new RuntimeException("Student not found: " + studentId));
-                yield userRepository.findByUsername(s.getStudentId())
-                        .map(List::of).orElse(List.of());
-            }
-            default -> userRepository.findByRole("STUDENT");
+            case "CLASS"   -> userRepository.findUserIdsByStudentStandard(String.valueOf(standard));
+            case "STUDENT" -> userRepository.findUserIdsByStudentId(studentId);
+            default -> readOnlyTransaction.execute(status -> {
+                try (Stream<Long> ids = userRepository.streamStudentUserIds()) {
+                    return ids.toList();
+                }
+            });
         };
     }
 
-    private void persistAndPushNotification(Long userId, String title, String message,
-                                            String priority, Long announcementId) {
-        String type = priority.equals("URGENT") ? "URGENT_ALERT"
-                    : priority.equals("ALERT")  ? "ALERT"
-                    : "ANNOUNCEMENT";
-
-        Notification notif = Notification.builder()
-                .userId(userId)
-                .title(title)
-                .message(message)
-                .type(type)
-                .isRead(false)
-                .createdAt(LocalDateTime.now())
-                .build();
-        notificationRepository.save(notif);
-
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("id", notif.getId());
-        payload.put("announcementId", announcementId);
-        payload.put("title", title);
-        payload.put("message", message);
-        payload.put("type", type);
-        payload.put("priority", priority);
-        payload.put("timestamp", notif.getCreatedAt().toString());
-
-        messagingTemplate.convertAndSend("/topic/notifications/" + userId, payload);
-        log.debug("📤 Pushed notification to userId={}", userId);
-    }
-
     private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth != null && auth.getPrincipal() instanceof CustomUserDetails details) {
-            return userRepository.findById(details.getId())
-                    .orElseThrow(() -> new RuntimeException("Admin user not found"));
-        }
-        throw new RuntimeException("No authenticated user in security context");
-    }
-
-    private Long getCurrentUserId() {
-        try {
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            if (auth != null && auth.getPrincipal() instanceof CustomUserDetails details) {
-                return details.getId();
-            }
-        } catch (Exception ignored) {}
-        return null;
+        return currentUserResolver.user();
     }
 
     private AnnouncementDto convertToDto(Announcement a) {
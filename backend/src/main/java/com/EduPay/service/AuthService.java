@@ -1,7 +1,9 @@
 package com.EduPay.service;
 
 import com.EduPay.dto.AuthResponse;
+import com.EduPay.model.Student;
 import com.EduPay.model.User;
+import com.EduPay.repository.StudentRepository;
 import com.EduPay.repository.UserRepository;
 import com.EduPay.util.JwtUtil;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -13,11 +15,14 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder; // Used for hashing passwords
     private final JwtUtil jwtUtil; // Used for generating JWT tokens
+    private final StudentRepository studentRepository;
 
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil,
+                       StudentRepository studentRepository) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtil = jwtUtil;
+        this.studentRepository = studentRepository;
     }
 
 
@@ -31,14 +36,31 @@ public class AuthService {
             throw new RuntimeException("Invalid credentials.");
         }
 
-        // Generate JWT token
-        String token = jwtUtil.generateToken(user.getUsername(), user.getRole());
+        if (!"ACTIVE".equalsIgnoreCase(user.getStatus())) {
+            throw new RuntimeException("Account is disabled.");
+        }
+
+        // Generate JWT token; it carries id, role and linked student so requests need no user lookup
+        String token = jwtUtil.generateToken(user, resolveStudentPk(user));
 
         // Return authentication response
         return new AuthResponse(token, user.getRole(), user.getId(), user.getUsername());
     }
 
 
+    /**
+     * students.id of the student linked to a STUDENT user (students.user_id), null otherwise.
+     */
+    private Long resolveStudentPk(User user) {
+        if (!"STUDENT".equalsIgnoreCase(user.getRole())) {
+            return null;
+        }
+        return studentRepository.findByUserId(user.getId())
+                .map(Student::getId)
+                .orElse(null);
+    }
+
+
     public void registerAdmin(String username, String password) {
         // Check if username already exists
         if (userRepository.findByUsername(username).isPresent()) {
@@ -0,0 +1,239 @@
+package com.EduPay.service;
+
+import com.EduPay.config.WebSocketConfig;
+import com.EduPay.dto.BroadcastJobStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Background fan-out for announcement broadcasts.
+ *
+ * Announcements are stored once and merged into each inbox at read time
+ * (see InboxService), so the fan-out only delivers live frames. A broadcast
+ * is accepted as a job and returns immediately; a worker then
+ *   1. resolves the recipient user ids
+ *   2. pushes the WebSocket frames: a single frame on the shared audience topic
+ *      for ALL / CLASS broadcasts, otherwise per-user frames in batches of
+ *      batch-size, in parallel on virtual threads
+ *   3. bumps each recipient's cached unread counter (pushed per user only for
+ *      per-user frames; audience subscribers count the shared frame locally)
+ *
+ * Job progress is kept in memory and can be polled by job id.
+ */
+@Service
+public class BroadcastFanoutService {
+
+    private static final Logger log = LoggerFactory.getLogger(BroadcastFanoutService.class);
+
+    private static final long FINISHED_JOB_RETENTION_MINUTES = 60;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final ExecutorService fanoutExecutor;
+    private final Map<String, BroadcastJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${edupay.broadcast.batch-size:500}")
+    private int batchSize;
+
+    public BroadcastFanoutService(SimpMessagingTemplate messagingTemplate,
+                                  UnreadCounterService unreadCounterService,
+                                  @Value("${edupay.broadcast.workers:2}") int workers) {
+        this.messagingTemplate = messagingTemplate;
+        this.unreadCounterService = unreadCounterService;
+        this.fanoutExecutor = Executors.newFixedThreadPool(workers,
+                Thread.ofPlatform().name("broadcast-fanout-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        fanoutExecutor.shutdown();
+        fanoutExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registers a QUEUED job for the announcement. Call it inside the announcement's
+     * transaction (it takes the unread-counter mark) and {@link #start(String)} once
+     * the announcement is committed.
+     *
+     * @param audienceTopic shared topic to publish on, or null to push to each
+     *                      recipient's own topic
+     */
+    public BroadcastJobStatus register(Long announcementId, String title, String message,
+                                       String priority, LocalDateTime publishedAt, String audienceTopic,
+                                       Supplier<List<Long>> recipientResolver) {
+        evictFinishedJobs();
+        BroadcastJob job = new BroadcastJob(UUID.randomUUID().toString(), announcementId,
+                title, message, priority, publishedAt, audienceTopic, recipientResolver, unreadCounterService.mark());
+        jobs.put(job.jobId, job);
+        return job.snapshot();
+    }
+
+    /** Hands a registered job to the fan-out workers. */
+    public void start(String jobId) {
+        BroadcastJob job = jobs.get(jobId);
+        if (job != null) {
+            fanoutExecutor.submit(() -> run(job));
+        }
+    }
+
+    public BroadcastJobStatus getStatus(String jobId) {
+        BroadcastJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Broadcast job not found: " + jobId);
+        }
+        return job.snapshot();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Worker
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void run(BroadcastJob job) {
+        job.startedAt = LocalDateTime.now();
+        job.startNanos = System.nanoTime();
+        job.status = "RUNNING";
+        try {
+            List<Long> recipients = job.recipientResolver.get();
+            job.totalRecipients = recipients.size();
+            log.info("📢 Fan-out job {} → {} recipients [announcementId={}]",
+                    job.jobId, recipients.size(), job.announcementId);
+
+            String type = notificationType(job.priority);
+            if (job.audienceTopic != null) {
+                // ALL / CLASS: one frame reaches every subscriber of the audience topic
+                if (!recipients.isEmpty()) {
+                    messagingTemplate.convertAndSend(job.audienceTopic, buildPayload(job, type));
+                    job.pushed.incrementAndGet();
+                }
+                unreadCounterService.incrementAll(recipients, job.counterMark);
+                job.reached.addAndGet(recipients.size());
+            } else {
+                for (int from = 0; from < recipients.size(); from += batchSize) {
+                    List<Long> batch = recipients.subList(from, Math.min(from + batchSize, recipients.size()));
+                    pushBatch(job, batch, type);
+                    job.reached.addAndGet(batch.size());
+                }
+            }
+            job.status = "COMPLETED";
+        } catch (Exception e) {
+            job.status = "FAILED";
+            log.error("❌ Fan-out job {} failed after {} recipients: {}",
+                    job.jobId, job.reached.get(), e.getMessage(), e);
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            job.finishNanos = System.nanoTime();
+            log.info("📢 Fan-out job {} {}: {}", job.jobId, job.status, job.snapshot());
+        }
+    }
+
+    private void pushBatch(BroadcastJob job, List<Long> userIds, String type) {
+        Map<String, Object> payload = buildPayload(job, type);
+        try (ExecutorService pushers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Long userId : userIds) {
+                pushers.submit(() -> {
+                    try {
+                        messagingTemplate.convertAndSend(WebSocketConfig.userTopic(userId), payload);
+                        unreadCounterService.increment(userId, job.counterMark);
+                        job.pushed.incrementAndGet();
+                    } catch (Exception e) {
+                        job.failed.incrementAndGet();
+                        log.warn("Push to userId={} failed: {}", userId, e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    private Map<String, Object> buildPayload(BroadcastJob job, String type) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("id", null); // announcements have no per-user row — read state is keyed by announcementId
+        payload.put("announcementId", job.announcementId);
+        payload.put("source", "ANNOUNCEMENT");
+        payload.put("title", job.title);
+        payload.put("message", job.message);
+        payload.put("type", type);
+        payload.put("priority", job.priority);
+        payload.put("timestamp", job.publishedAt.toString());
+        return payload;
+    }
+
+    static String notificationType(String priority) {
+        return "URGENT".equals(priority) ? "URGENT_ALERT"
+             : "ALERT".equals(priority)  ? "ALERT"
+             : "ANNOUNCEMENT";
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(FINISHED_JOB_RETENTION_MINUTES);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Job state
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static final class BroadcastJob {
+        final String jobId;
+        final Long announcementId;
+        final String title;
+        final String message;
+        final String priority;
+        final LocalDateTime publishedAt;
+        final String audienceTopic;
+        final Supplier<List<Long>> recipientResolver;
+        final long counterMark; // taken at register(), before the announcement commits
+
+        final AtomicInteger reached = new AtomicInteger();
+        final AtomicInteger pushed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        volatile String status = "QUEUED";
+        volatile Integer totalRecipients;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile long startNanos;
+        volatile long finishNanos;
+
+        BroadcastJob(String jobId, Long announcementId, String title, String message,
+                     String priority, LocalDateTime publishedAt, String audienceTopic,
+                     Supplier<List<Long>> recipientResolver, long counterMark) {
+            this.jobId = jobId;
+            this.announcementId = announcementId;
+            this.title = title;
+            this.message = message;
+            this.priority = priority;
+            this.publishedAt = publishedAt;
+            this.audienceTopic = audienceTopic;
+            this.recipientResolver = recipientResolver;
+            this.counterMark = counterMark;
+        }
+
+        BroadcastJobStatus snapshot() {
+            Long elapsedMs = null;
+            Double rate = null;
+            if (startedAt != null) {
+                long end = finishedAt != null ? finishNanos : System.nanoTime();
+                elapsedMs = (end - startNanos) / 1_000_000;
+                rate = elapsedMs > 0 ? Math.round(reached.get() * 100_000.0 / elapsedMs) / 100.0 : null;
+            }
+            return new BroadcastJobStatus(jobId, announcementId, status, totalRecipients,
+                    reached.get(), pushed.get(), failed.get(),
+                    startedAt, finishedAt, elapsedMs, rate);
+        }
+    }
+}
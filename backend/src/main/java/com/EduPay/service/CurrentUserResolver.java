@@ -0,0 +1,98 @@
+package com.EduPay.service;
+
+import com.EduPay.config.CustomUserDetails;
+import com.EduPay.model.Student;
+import com.EduPay.model.User;
+import com.EduPay.repository.StudentRepository;
+import com.EduPay.repository.UserRepository;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.Optional;
+
+/**
+ * The authenticated user and their linked student for the current HTTP request.
+ *
+ * Id and role come from the JWT principal without a query. The User entity and
+ * the Student are loaded on first use — the student by students.id from the
+ * token's "sid" claim, else through the indexed students.user_id link — and
+ * memoized, so every service asking during the same request shares one lookup.
+ *
+ * Request-scoped: only usable on request threads. Work handed to other threads
+ * must resolve what it needs first and pass it along.
+ */
+@Component
+@RequestScope
+public class CurrentUserResolver {
+
+    private final UserRepository userRepository;
+    private final StudentRepository studentRepository;
+
+    private User user;
+    private Optional<Student> student;
+
+    public CurrentUserResolver(UserRepository userRepository, StudentRepository studentRepository) {
+        this.userRepository = userRepository;
+        this.studentRepository = studentRepository;
+    }
+
+    /** Principal of the current request, or null if unauthenticated. */
+    public CustomUserDetails principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof CustomUserDetails details
+                ? details : null;
+    }
+
+    /**
+     * @throws RuntimeException if the request is not authenticated
+     */
+    public Long userId() {
+        return requirePrincipal().getId();
+    }
+
+    /**
+     * The current User entity, loaded once per request.
+     *
+     * @throws RuntimeException if the request is not authenticated or the user no longer exists
+     */
+    public User user() {
+        if (user == null) {
+            Long userId = userId();
+            user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
+        }
+        return user;
+    }
+
+    /** Student linked to the current user, resolved once per request; empty for non-students. */
+    public Optional<Student> student() {
+        if (student == null) {
+            CustomUserDetails principal = principal();
+            if (principal == null) {
+                return Optional.empty();
+            }
+            student = principal.getStudentPk() != null
+                    ? studentRepository.findById(principal.getStudentPk())
+                    : studentRepository.findByUserId(principal.getId());
+        }
+        return student;
+    }
+
+    /**
+     * @throws RuntimeException if the current user has no linked student profile
+     */
+    public Student requireStudent() {
+        return student().orElseThrow(() -> new RuntimeException(
+                "Student profile not found for user: " + requirePrincipal().getUsername()));
+    }
+
+    private CustomUserDetails requirePrincipal() {
+        CustomUserDetails principal = principal();
+        if (principal == null) {
+            throw new RuntimeException("User is not authenticated.");
+        }
+        return principal;
+    }
+}
@@ -3,60 +3,165 @@ package com.EduPay.service;
 import com.EduPay.model.FinancialRecord;
 import com.EduPay.repository.FinancialRecordRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+/**
+ * Dashboard summary backed by running ledger totals.
+ *
+ * Income / expense / per-category totals are loaded once with a single
+ * SUM ... GROUP BY query and then maintained incrementally as
+ * FinancialRecordService creates, updates and deletes records (each delta is
+ * applied after its transaction commits), so a summary costs O(categories)
+ * instead of a full ledger scan. Recent activity
+ * is a LIMIT 10 index scan on record_date.
+ */
 @Service
 public class DashboardService {
-    
+
     private final FinancialRecordRepository financialRecordRepository;
-    
+
+    /** Running totals; null until first loaded (and reset by {@link #refreshTotals()}). */
+    private LedgerTotals totals;
+
     public DashboardService(FinancialRecordRepository financialRecordRepository) {
         this.financialRecordRepository = financialRecordRepository;
     }
-    
+
     public Map<String, Object> getDashboardSummary() {
-        List<FinancialRecord> allRecords = financialRecordRepository.findAll();
-        
-        BigDecimal totalIncome = allRecords.stream()
-                .filter(r -> "INCOME".equalsIgnoreCase(r.getType()))
-                .map(FinancialRecord::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-                
-        BigDecimal totalExpenses = allRecords.stream()
-                .filter(r -> "EXPENSE".equalsIgnoreCase(r.getType()))
-                .map(FinancialRecord::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-                
-        BigDecimal netBalance = totalIncome.subtract(totalExpenses);
-        
-        Map<String, BigDecimal> categoryTotals = allRecords.stream()
-                .collect(Collectors.groupingBy(
-                        FinancialRecord::getCategory,
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                FinancialRecord::getAmount,
-                                BigDecimal::add
-                        )
-                ));
-        
-        List<FinancialRecord> recentActivity = allRecords.stream()
-                .sorted((a, b) -> b.getRecordDate().compareTo(a.getRecordDate()))
-                .limit(10)
-                .collect(Collectors.toList());
-                
-        Map<String, Object> summary = new HashMap<>();
-        summary.put("totalIncome", totalIncome);
-        summary.put("totalExpenses", totalExpenses);
-        summary.put("netBalance", netBalance);
-        summary.put("categoryTotals", categoryTotals);
+        Map<String, Object> summary;
+        synchronized (this) {
+            summary = loadedTotals().toSummary();
+        }
+        List<FinancialRecord> recentActivity = financialRecordRepository.findTop10ByOrderByRecordDateDescIdDesc();
         summary.put("recentActivity", recentActivity);
-        
         return summary;
     }
+
+    /**
+     * Discards the running totals and reloads them from the database.
+     */
+    public synchronized Map<String, Object> refreshTotals() {
+        totals = null;
+        return loadedTotals().toSummary();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Incremental maintenance (called inside the transaction that writes the record)
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public void onRecordCreated(FinancialRecord created) {
+        afterCommit(t -> t.apply(created, BigDecimal.ONE));
+    }
+
+    public void onRecordUpdated(FinancialRecord before, FinancialRecord after) {
+        FinancialRecord previous = copyOf(before);
+        FinancialRecord current = copyOf(after);
+        afterCommit(t -> {
+            t.apply(previous, BigDecimal.ONE.negate());
+            t.apply(current, BigDecimal.ONE);
+        });
+    }
+
+    public void onRecordDeleted(FinancialRecord deleted) {
+        FinancialRecord removed = copyOf(deleted);
+        afterCommit(t -> t.apply(removed, BigDecimal.ONE.negate()));
+    }
+
+    /**
+     * Applies {@code delta} once the record change has committed, under the
+     * same monitor as {@link #loadedTotals()}.
+     *
+     * The delta is only safe on totals loaded before the commit — totals loaded
+     * in between may already contain the change. So the totals instance is
+     * captured just before commit: if it is still the current one afterwards
+     * the delta is applied, otherwise (reloaded meanwhile) the totals are
+     * dropped and reload on the next summary.
+     */
+    private void afterCommit(Consumer<LedgerTotals> delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            synchronized (this) {
+                totals = null;
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private LedgerTotals seenBeforeCommit;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                synchronized (DashboardService.this) {
+                    seenBeforeCommit = totals;
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    return;
+                }
+                synchronized (DashboardService.this) {
+                    if (totals != null && totals == seenBeforeCommit) {
+                        delta.accept(totals);
+                    } else {
+                        totals = null;
+                    }
+                }
+            }
+        });
+    }
+
+    private static FinancialRecord copyOf(FinancialRecord r) {
+        return new FinancialRecord(r.getId(), r.getAmount(), r.getType(), r.getCategory(),
+                r.getRecordDate(), r.getNotes());
+    }
+
+    private LedgerTotals loadedTotals() {
+        if (totals == null) {
+            LedgerTotals loaded = new LedgerTotals();
+            for (Object[] row : financialRecordRepository.sumAmountByTypeAndCategory()) {
+                loaded.add((String) row[0], (String) row[1], (BigDecimal) row[2]);
+            }
+            totals = loaded;
+        }
+        return totals;
+    }
+
+    /** Mutable totals; guarded by the DashboardService monitor. */
+    private static final class LedgerTotals {
+        private BigDecimal totalIncome = BigDecimal.ZERO;
+        private BigDecimal totalExpenses = BigDecimal.ZERO;
+        private final Map<String, BigDecimal> categoryTotals = new HashMap<>();
+
+        void apply(FinancialRecord record, BigDecimal sign) {
+            add(record.getType(), record.getCategory(), record.getAmount().multiply(sign));
+        }
+
+        void add(String type, String category, BigDecimal amount) {
+            if ("INCOME".equalsIgnoreCase(type)) {
+                totalIncome = totalIncome.add(amount);
+            } else if ("EXPENSE".equalsIgnoreCase(type)) {
+                totalExpenses = totalExpenses.add(amount);
+            }
+            BigDecimal categoryTotal = categoryTotals.merge(category, amount, BigDecimal::add);
+            if (categoryTotal.signum() == 0 && amount.signum() < 0) {
+                categoryTotals.remove(category); // last record of the category removed
+            }
+        }
+
+        Map<String, Object> toSummary() {
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("totalIncome", totalIncome);
+            summary.put("totalExpenses", totalExpenses);
+            summary.put("netBalance", totalIncome.subtract(totalExpenses));
+            summary.put("categoryTotals", new HashMap<>(categoryTotals));
+            return summary;
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package com.EduPay.service;
+
+import com.EduPay.repository.FinancialRecordRepository;
+import com.EduPay.repository.PaymentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Streaming audit exports of the ledger and payments.
+ *
+ * Rows are read through a forward-only cursor (fetch size 1000) inside a
+ * read-only transaction and written one at a time to the caller's output
+ * stream as CSV or NDJSON, so memory stays flat whatever the row count.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    private static final List<String> FINANCIAL_RECORD_COLUMNS =
+            List.of("id", "recordDate", "type", "category", "amount", "notes");
+    private static final List<String> PAYMENT_COLUMNS =
+            List.of("id", "transactionId", "paymentDate", "amount", "paymentMethod", "status",
+                    "gatewayPaymentId", "gatewayOrderId", "studentId", "recordedByUserId");
+
+    private final FinancialRecordRepository financialRecordRepository;
+    private final PaymentRepository paymentRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ExportService(FinancialRecordRepository financialRecordRepository,
+                         PaymentRepository paymentRepository,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager) {
+        this.financialRecordRepository = financialRecordRepository;
+        this.paymentRepository = paymentRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public long exportFinancialRecords(String format, OutputStream out) {
+        return export("financial-records", FINANCIAL_RECORD_COLUMNS,
+                financialRecordRepository::streamForExport, format, out);
+    }
+
+    public long exportPayments(String format, OutputStream out) {
+        return export("payments", PAYMENT_COLUMNS, paymentRepository::streamForExport, format, out);
+    }
+
+    /** Normalizes the requested format, rejecting anything but csv / ndjson. */
+    public static String normalizeFormat(String format) {
+        String f = format == null ? CSV : format.toLowerCase();
+        if (!CSV.equals(f) && !NDJSON.equals(f)) {
+            throw new RuntimeException("Unsupported export format: " + format + " (use csv or ndjson)");
+        }
+        return f;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Writers
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private long export(String dataset, List<String> columns, Supplier<Stream<Object[]>> source,
+                        String format, OutputStream out) {
+        boolean ndjson = NDJSON.equals(normalizeFormat(format));
+        long start = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+
+        Long rows = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<Object[]> stream = source.get()) {
+                if (!ndjson) {
+                    writer.write(String.join(",", columns));
+                    writer.write('\n');
+                }
+                for (Object[] row : (Iterable<Object[]>) stream::iterator) {
+                    if (ndjson) {
+                        writeJsonLine(writer, columns, row);
+                    } else {
+                        writeCsvLine(writer, row);
+                    }
+                    count++;
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Export of " + dataset + " aborted after " + count + " rows", e);
+            }
+            return count;
+        });
+
+        log.info("📦 Exported {} {} rows as {} in {} ms",
+                rows, dataset, ndjson ? NDJSON : CSV, (System.nanoTime() - start) / 1_000_000);
+        return rows == null ? 0 : rows;
+    }
+
+    private void writeJsonLine(Writer writer, List<String> columns, Object[] row) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            json.put(columns.get(i), row[i]);
+        }
+        writer.write(objectMapper.writeValueAsString(json));
+        writer.write('\n');
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (row[i] != null) {
+                writer.write(csvEscape(row[i].toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static String csvEscape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,67 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.PaymentCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for the payment gateway, for local runs and end-to-end tests.
+ * Active only in the local / test profiles, and only when they set
+ * edupay.payments.gateway=fake; other environments must provide a real gateway.
+ *
+ * Orders live in memory; {@link #complete(String, boolean)} plays the gateway's
+ * part of a payment by building the webhook callback the real gateway would send.
+ */
+@Component
+@Profile({"local", "test"})
+@ConditionalOnProperty(name = "edupay.payments.gateway", havingValue = "fake")
+public class FakePaymentGateway implements PaymentGatewayClient {
+
+    private static final Logger log = LoggerFactory.getLogger(FakePaymentGateway.class);
+
+    private final Map<String, GatewayOrder> orders = new ConcurrentHashMap<>();
+    private final Map<String, String> paymentIds = new ConcurrentHashMap<>();
+
+    @Override
+    public GatewayOrder createOrder(Double amount, String currency, String receipt) {
+        String orderId = "order_fake_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        GatewayOrder order = new GatewayOrder(orderId, amount, currency, "created");
+        orders.put(orderId, order);
+        log.info("🧪 Fake gateway order {} created for {} {} [receipt={}]", orderId, amount, currency, receipt);
+        return order;
+    }
+
+    /**
+     * Simulates the customer completing (or failing) payment of an order.
+     *
+     * @return the callback the gateway would post to /api/payments/callback
+     */
+    public PaymentCallback complete(String orderId, boolean success) {
+        GatewayOrder order = orders.get(orderId);
+        if (order == null) {
+            throw new RuntimeException("Unknown fake gateway order: " + orderId);
+        }
+        String status = success ? "paid" : "failed";
+        orders.put(orderId, new GatewayOrder(orderId, order.amount(), order.currency(), status));
+        String paymentId = "pay_fake_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        paymentIds.put(orderId, paymentId);
+        return new PaymentCallback(paymentId, orderId, "fake_signature",
+                success ? "success" : "failed", success ? null : "Payment declined by fake gateway");
+    }
+
+    @Override
+    public GatewayOrderStatus fetchOrderStatus(String orderId) {
+        GatewayOrder order = orders.get(orderId);
+        if (order == null) {
+            throw new RuntimeException("Unknown fake gateway order: " + orderId);
+        }
+        return new GatewayOrderStatus(orderId, order.status(), paymentIds.get(orderId));
+    }
+}
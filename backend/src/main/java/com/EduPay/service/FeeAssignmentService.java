@@ -1,24 +1,30 @@
 package com.EduPay.service;
 
 import com.EduPay.dto.FeeAssignmentRequest;
-import com.EduPay.model.Fee;
+import com.EduPay.model.FeeAssignmentRun;
 import com.EduPay.model.Student;
+import com.EduPay.repository.FeeAssignmentRunRepository;
 import com.EduPay.repository.FeeRepository;
 import com.EduPay.repository.StudentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Service for bulk fee assignment and late-fee penalty application.
  *
  * Supports three scopes: ALL | CLASS | STUDENT
- * Late fee: 1% of outstanding amount added to amount + outstanding (compounding-friendly)
+ * Late fee: 1% of outstanding amount added to amount + outstanding, at most once per fee per day
  */
 @Service
 public class FeeAssignmentService {
@@ -28,11 +34,26 @@ public class FeeAssignmentService {
 
     private final FeeRepository feeRepository;
     private final StudentRepository studentRepository;
+    private final FeeAssignmentRunRepository feeAssignmentRunRepository;
+    private final StudentBalanceService studentBalanceService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${edupay.fees.assign-chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${edupay.fees.assign-heartbeat-timeout-seconds:300}")
+    private long heartbeatTimeoutSeconds;
 
     public FeeAssignmentService(FeeRepository feeRepository,
-                                StudentRepository studentRepository) {
+                                StudentRepository studentRepository,
+                                FeeAssignmentRunRepository feeAssignmentRunRepository,
+                                StudentBalanceService studentBalanceService,
+                                PlatformTransactionManager transactionManager) {
         this.feeRepository   = feeRepository;
         this.studentRepository = studentRepository;
+        this.feeAssignmentRunRepository = feeAssignmentRunRepository;
+        this.studentBalanceService = studentBalanceService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -41,35 +62,139 @@ public class FeeAssignmentService {
 
     /**
      * Assigns a fee entry to the resolved set of students.
-     * Returns a summary map: { "assigned": N, "skipped": 0 }
+     *
+     * Fees are written set-based: each chunk of students (keyset-paginated on students.id)
+     * is handled by a single INSERT ... SELECT and committed on its own, so neither the
+     * student table nor the new fee rows are ever loaded into the persistence context.
+     * Progress is stored in a FeeAssignmentRun so an interrupted run can be resumed.
+     *
+     * Returns a summary map: { "runId": R, "assigned": N, ... }
      */
-    @Transactional
     public Map<String, Object> assignFees(FeeAssignmentRequest req) {
         validate(req);
 
-        List<Student> targets = resolveStudents(req.getScopeType(), req.getStandard(), req.getStudentId());
-        log.info("💸 Assigning '{}' ₹{} → {} student(s) [scope={}]",
-                req.getFeeType(), req.getAmount(), targets.size(), req.getScopeType());
-
-        for (Student student : targets) {
-            Fee fee = new Fee();
-            fee.setStudent(student);
-            fee.setFeeType(req.getFeeType());
-            fee.setAmount(req.getAmount());
-            fee.setAmountPaid(0.0);
-            fee.setOutstandingAmount(req.getAmount());
-            fee.setDueDate(req.getDueDate());
-            fee.setStatus("Pending");
-            feeRepository.save(fee);
+        FeeAssignmentRun run = new FeeAssignmentRun();
+        run.setScopeType(req.getScopeType() != null ? req.getScopeType().toUpperCase() : "ALL");
+        run.setStandard(req.getStandard());
+        run.setStudentId(req.getStudentId());
+        run.setFeeType(req.getFeeType());
+        run.setAmount(req.getAmount());
+        run.setDueDate(req.getDueDate());
+        run.setLastStudentPk(0L);
+        run.setAssignedCount(0);
+        run.setStatus("RUNNING");
+        run.setOwner(UUID.randomUUID().toString());
+        run.setStartedAt(LocalDateTime.now());
+        run.setHeartbeatAt(run.getStartedAt());
+        run = feeAssignmentRunRepository.save(run);
+
+        return executeRun(run);
+    }
+
+    /**
+     * Continues a FAILED assignment — or a RUNNING one whose executor has not
+     * committed a chunk for heartbeat-timeout seconds — from its last committed chunk.
+     * The run is claimed with one conditional UPDATE, so a run still being
+     * executed elsewhere is never resumed twice.
+     *
+     * @throws RuntimeException if the run is still alive under another executor
+     */
+    public Map<String, Object> resumeAssignment(Long runId) {
+        FeeAssignmentRun run = getRun(runId);
+        if ("COMPLETED".equals(run.getStatus())) {
+            return toSummary(run, 0);
+        }
+        String owner = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status -> feeAssignmentRunRepository.claim(
+                runId, owner, now, now.minusSeconds(heartbeatTimeoutSeconds)));
+        if (claimed == null || claimed == 0) {
+            throw new RuntimeException("Fee assignment run " + runId + " is still running (last progress at "
+                    + run.getHeartbeatAt() + "); it can be resumed once it fails or stops for "
+                    + heartbeatTimeoutSeconds + "s.");
         }
+        return executeRun(getRun(runId)); // reloaded: the cursor may have moved since the first read
+    }
 
-        return Map.of(
-                "assigned", targets.size(),
-                "feeType",  req.getFeeType(),
-                "amount",   req.getAmount(),
-                "dueDate",  req.getDueDate().toString(),
-                "scope",    req.getScopeType()
-        );
+    public FeeAssignmentRun getRun(Long runId) {
+        return feeAssignmentRunRepository.findById(runId)
+                .orElseThrow(() -> new RuntimeException("Fee assignment run not found: " + runId));
+    }
+
+    private Map<String, Object> executeRun(FeeAssignmentRun run) {
+        long startNanos = System.nanoTime();
+
+        // STUDENT scope is a single-row chunk: (pk - 1, pk]
+        Long singleStudentPk = null;
+        if ("STUDENT".equals(run.getScopeType())) {
+            singleStudentPk = studentRepository.findByStudentId(run.getStudentId())
+                    .map(Student::getId)
+                    .orElseThrow(() -> new RuntimeException("Student not found: " + run.getStudentId()));
+        }
+        String standard = "CLASS".equals(run.getScopeType()) ? run.getStandard() : null;
+
+        log.info("💸 Assigning '{}' ₹{} [scope={}, runId={}, resumeAfter={}]",
+                run.getFeeType(), run.getAmount(), run.getScopeType(), run.getId(), run.getLastStudentPk());
+
+        try {
+            while (true) {
+                Long upToId = singleStudentPk != null
+                        ? (run.getLastStudentPk() < singleStudentPk ? singleStudentPk : null)
+                        : studentRepository.findChunkUpperBound(run.getLastStudentPk(), standard, chunkSize);
+                if (upToId == null) {
+                    break;
+                }
+                Long afterId = singleStudentPk != null ? singleStudentPk - 1 : run.getLastStudentPk();
+
+                Integer inserted = transactionTemplate.execute(status -> {
+                    int n = feeRepository.bulkAssignFee(run.getFeeType(), run.getAmount(),
+                            run.getDueDate(), standard, afterId, upToId);
+                    studentBalanceService.onFeeAssignedToChunk(run.getAmount(), run.getDueDate(),
+                            standard, afterId, upToId);
+                    if (feeAssignmentRunRepository.advance(run.getId(), run.getOwner(), upToId, n,
+                            LocalDateTime.now()) == 0) {
+                        throw new RuntimeException("Fee assignment run " + run.getId()
+                                + " was claimed by another executor; chunk rolled back.");
+                    }
+                    return n;
+                });
+                run.setLastStudentPk(upToId);
+                run.setAssignedCount(run.getAssignedCount() + inserted);
+                log.debug("💸 Chunk committed: {} fee(s) up to student pk {} (runId={})",
+                        inserted, upToId, run.getId());
+            }
+
+            run.setStatus("COMPLETED");
+            run.setFinishedAt(LocalDateTime.now());
+            transactionTemplate.execute(status -> feeAssignmentRunRepository.finish(
+                    run.getId(), run.getOwner(), "COMPLETED", run.getFinishedAt()));
+        } catch (RuntimeException e) {
+            // Only the owner may fail the run; a run taken over by a resume stays RUNNING
+            run.setStatus("FAILED");
+            transactionTemplate.execute(status -> feeAssignmentRunRepository.finish(
+                    run.getId(), run.getOwner(), "FAILED", null));
+            log.error("❌ Fee assignment run {} failed after student pk {}: {}",
+                    run.getId(), run.getLastStudentPk(), e.getMessage(), e);
+            throw e;
+        }
+
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        log.info("💸 Assigned '{}' to {} student(s) in {} ms [runId={}]",
+                run.getFeeType(), run.getAssignedCount(), elapsedMs, run.getId());
+        return toSummary(run, elapsedMs);
+    }
+
+    private Map<String, Object> toSummary(FeeAssignmentRun run, long elapsedMs) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("runId",     run.getId());
+        summary.put("status",    run.getStatus());
+        summary.put("assigned",  run.getAssignedCount());
+        summary.put("feeType",   run.getFeeType());
+        summary.put("amount",    run.getAmount());
+        summary.put("dueDate",   run.getDueDate().toString());
+        summary.put("scope",     run.getScopeType());
+        summary.put("elapsedMs", elapsedMs);
+        return summary;
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -77,44 +202,53 @@ public class FeeAssignmentService {
     // ─────────────────────────────────────────────────────────────────────────
 
     /**
-     * Finds all fees past their dueDate (with outstanding > 0) and adds 1%
-     * of the outstanding amount as a late charge.
+     * Adds 1% of the outstanding amount as a late charge to every fee past its dueDate
+     * (with outstanding > 0), as one set-based UPDATE computed in SQL.
+     *
+     * Idempotent per day: a fee already charged today is skipped, so a retried or
+     * double-clicked run does not compound the charge.
      *
      * Scope: ALL | CLASS | STUDENT
-     * Returns summary: { "processed": N, "totalLateCharge": X }
+     * Returns summary: { "processed": N, "totalLateCharge": X, "elapsedMs": T, "feesPerSecond": R }
      */
     @Transactional
     public Map<String, Object> applyLateCharge(String scopeType, String standard, String studentId) {
         LocalDate today = LocalDate.now();
-        List<Fee> overdueFees = resolveOverdueFees(
-                scopeType != null ? scopeType : "ALL",
-                standard, studentId, today);
-
-        double totalCharge = 0.0;
-        int processed = 0;
-
-        for (Fee fee : overdueFees) {
-            double outstanding = fee.getOutstandingAmount();
-            double charge = Math.round(outstanding * LATE_FEE_RATE * 100.0) / 100.0; // round to 2 dp
-
-            // Add 1% to the total amount and outstanding
-            fee.setAmount(fee.getAmount() + charge);
-            fee.setOutstandingAmount(outstanding + charge);
-            fee.setStatus("Overdue"); // ensure status reflects overdue state
-            feeRepository.save(fee);
-
-            totalCharge += charge;
-            processed++;
-            log.debug("⚠️ Late charge ₹{} added to feeId={} (student={})",
-                    charge, fee.getId(), fee.getStudent().getStudentId());
+        String scope = scopeType != null ? scopeType.toUpperCase() : "ALL";
+
+        String standardFilter = null;
+        Long studentPk = null;
+        switch (scope) {
+            case "CLASS" -> {
+                if (standard == null || standard.isBlank())
+                    throw new IllegalArgumentException("standard is required when scopeType=CLASS");
+                standardFilter = standard;
+            }
+            case "STUDENT" -> studentPk = studentRepository.findByStudentId(studentId)
+                    .map(Student::getId)
+                    .orElseThrow(() -> new RuntimeException("Student not found: " + studentId));
+            default -> { } // ALL
         }
 
-        log.info("⚠️ Late fee applied to {} fees | total charge added: ₹{}", processed, totalCharge);
+        long startNanos = System.nanoTime();
+        FeeRepository.LateChargeTotals totals =
+                feeRepository.applyLateCharge(today, LATE_FEE_RATE, standardFilter, studentPk);
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+
+        long processed = totals.getProcessed() != null ? totals.getProcessed() : 0L;
+        double totalCharge = totals.getTotalCharge() != null ? totals.getTotalCharge() : 0.0;
+        long feesPerSecond = elapsedMs > 0 ? processed * 1000 / elapsedMs : processed;
+
+        log.info("⚠️ Late fee applied to {} fees | total charge added: ₹{} | {} ms ({} fees/s)",
+                processed, totalCharge, elapsedMs, feesPerSecond);
         return Map.of(
                 "processed",       processed,
                 "totalLateCharge", Math.round(totalCharge * 100.0) / 100.0,
                 "rateApplied",     "1%",
-                "scope",           scopeType != null ? scopeType : "ALL"
+                "scope",           scope,
+                "chargeDate",      today.toString(),
+                "elapsedMs",       elapsedMs,
+                "feesPerSecond",   feesPerSecond
         );
     }
 
@@ -122,30 +256,6 @@ public class FeeAssignmentService {
     // Helpers
     // ─────────────────────────────────────────────────────────────────────────
 
-    private List<Student> resolveStudents(String scopeType, String standard, String studentId) {
-        return switch (scopeType.toUpperCase()) {
-            case "CLASS"   -> studentRepository.findByStandard(standard);
-            case "STUDENT" -> List.of(
-                    studentRepository.findByStudentId(studentId)
-                            .orElseThrow(() -> new RuntimeException("Student not found: " + studentId))
-            );
-            default -> studentRepository.findAll(); // ALL
-        };
-    }
-
-    private List<Fee> resolveOverdueFees(String scopeType, String standard,
-                                         String studentId, LocalDate today) {
-        return switch (scopeType.toUpperCase()) {
-            case "CLASS" -> feeRepository.findOverdueFeesByStandard(standard, today);
-            case "STUDENT" -> {
-                Student s = studentRepository.findByStudentId(studentId)
-                        .orElseThrow(() -> new RuntimeException("Student not found: " + studentId));
-                yield feeRepository.findOverdueFeesByStudent(s.getId(), today);
-            }
-            default -> feeRepository.findOverdueFees(today); // ALL
-        };
-    }
-
     private void validate(FeeAssignmentRequest req) {
         if (req.getFeeType() == null || req.getFeeType().isBlank())
             throw new IllegalArgumentException("feeType is required");
@@ -0,0 +1,112 @@
+package com.EduPay.service;
+
+import com.EduPay.exception.PaymentRejectedException;
+import com.EduPay.model.Fee;
+import com.EduPay.repository.FeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Single write path for applying money to a fee, shared by cash deposits and
+ * online gateway callbacks.
+ *
+ * The fee is updated with one conditional UPDATE (FeeRepository.applyPayment):
+ * amount_paid / outstanding_amount are incremented in SQL and the overpayment
+ * check is part of the WHERE clause, so two concurrent payments can neither
+ * lose each other's update nor together exceed the outstanding amount.
+ *
+ * {@link #inTransaction(Supplier)} is the retry boundary: transient failures
+ * (deadlock, lock timeout, serialization failure) re-run the whole unit of
+ * work up to edupay.payments.apply-max-attempts times. Inside an already open
+ * transaction it runs once — the outer owner decides (the callback queue, for
+ * instance, has its own retry budget).
+ */
+@Service
+public class FeePaymentService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeePaymentService.class);
+
+    private final FeeRepository feeRepository;
+    private final StudentBalanceService studentBalanceService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${edupay.payments.apply-max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${edupay.payments.apply-retry-backoff-ms:25}")
+    private long retryBackoffMs;
+
+    public FeePaymentService(FeeRepository feeRepository,
+                             StudentBalanceService studentBalanceService,
+                             PlatformTransactionManager transactionManager) {
+        this.feeRepository = feeRepository;
+        this.studentBalanceService = studentBalanceService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Applies a payment to one fee and to the student's balance projection.
+     * Must run inside a transaction (see {@link #inTransaction(Supplier)}).
+     *
+     * @return the fee as stored after the update
+     * @throws PaymentRejectedException if the fee is unknown, belongs to another
+     *                                   student, or has less than {@code amount} outstanding
+     */
+    public Fee applyPayment(Long studentPk, Long feeId, double amount) {
+        if (amount <= 0) {
+            throw new PaymentRejectedException("Payment amount must be positive.");
+        }
+        if (feeRepository.applyPayment(feeId, studentPk, amount) == 0) {
+            Fee fee = feeRepository.findById(feeId)
+                    .orElseThrow(() -> new PaymentRejectedException("Fee not found with ID: " + feeId));
+            if (!fee.getStudent().getId().equals(studentPk)) {
+                throw new PaymentRejectedException("Fee does not belong to the specified student.");
+            }
+            throw new PaymentRejectedException("Payment amount exceeds outstanding amount for this fee.");
+        }
+        studentBalanceService.onPayment(studentPk, amount);
+        return feeRepository.findById(feeId)
+                .orElseThrow(() -> new RuntimeException("Fee not found with ID: " + feeId));
+    }
+
+    /**
+     * Runs {@code work} in its own transaction, retrying transient concurrency
+     * failures with a short jittered backoff.
+     */
+    public <T> T inTransaction(Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (TransientDataAccessException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.warn("Payment application attempt {}/{} hit a transient failure, retrying: {}",
+                        attempt, maxAttempts, e.getMessage());
+                sleepBeforeRetry(attempt);
+            }
+        }
+    }
+
+    private void sleepBeforeRetry(int attempt) {
+        long backoff = retryBackoffMs * attempt;
+        try {
+            Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying payment application", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.FinancialRecordPageDto;
+import com.EduPay.model.FinancialRecord;
+import com.EduPay.repository.FinancialRecordRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Filtered, keyset-paginated listing of the financial ledger, and the ledger's
+ * write path.
+ *
+ * All filters combine (each is optional) and pages are read with
+ * "after (recordDate, id) ... LIMIT size+1", so the cost of a page is
+ * bounded by its size rather than by its offset or the ledger size.
+ */
+@Service
+public class FinancialRecordService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final FinancialRecordRepository financialRecordRepository;
+    private final DashboardService dashboardService;
+    private final FinancialRollupService financialRollupService;
+
+    public FinancialRecordService(FinancialRecordRepository financialRecordRepository,
+                                  DashboardService dashboardService,
+                                  FinancialRollupService financialRollupService) {
+        this.financialRecordRepository = financialRecordRepository;
+        this.dashboardService = dashboardService;
+        this.financialRollupService = financialRollupService;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Writes — the record, its rollup buckets and the dashboard delta commit together
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @Transactional
+    public FinancialRecord create(FinancialRecord record) {
+        FinancialRecord saved = financialRecordRepository.save(record);
+        dashboardService.onRecordCreated(saved);
+        financialRollupService.onRecordCreated(saved);
+        return saved;
+    }
+
+    @Transactional
+    public Optional<FinancialRecord> update(Long id, FinancialRecord details) {
+        return financialRecordRepository.findById(id).map(record -> {
+            FinancialRecord before = new FinancialRecord(record.getId(), record.getAmount(), record.getType(),
+                    record.getCategory(), record.getRecordDate(), record.getNotes());
+            record.setAmount(details.getAmount());
+            record.setType(details.getType());
+            record.setCategory(details.getCategory());
+            record.setRecordDate(details.getRecordDate());
+            record.setNotes(details.getNotes());
+            FinancialRecord saved = financialRecordRepository.save(record);
+            dashboardService.onRecordUpdated(before, saved);
+            financialRollupService.onRecordUpdated(before, saved);
+            return saved;
+        });
+    }
+
+    @Transactional
+    public Optional<FinancialRecord> delete(Long id) {
+        return financialRecordRepository.findById(id).map(record -> {
+            financialRecordRepository.delete(record);
+            dashboardService.onRecordDeleted(record);
+            financialRollupService.onRecordDeleted(record);
+            return record;
+        });
+    }
+
+    /**
+     * @param cursor nextCursor of the previous page ("recordDate_id"), or null
+     * @param sort   "desc" (newest first, default) or "asc"
+     */
+    public FinancialRecordPageDto search(String type, String category, LocalDate startDate, LocalDate endDate,
+                                         BigDecimal minAmount, BigDecimal maxAmount,
+                                         String cursor, Integer size, String sort) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        boolean ascending = "asc".equalsIgnoreCase(sort);
+
+        LocalDate afterDate = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = cursor.split("_");
+                afterDate = LocalDate.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid cursor: " + cursor);
+            }
+        }
+
+        Limit limit = Limit.of(pageSize + 1);
+        List<FinancialRecord> rows = ascending
+                ? financialRecordRepository.searchOldestFirst(type, category, startDate, endDate,
+                        minAmount, maxAmount, afterDate, afterId, limit)
+                : financialRecordRepository.searchNewestFirst(type, category, startDate, endDate,
+                        minAmount, maxAmount, afterDate, afterId, limit);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<FinancialRecord> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            FinancialRecord last = page.get(page.size() - 1);
+            nextCursor = last.getRecordDate() + "_" + last.getId();
+        }
+        return new FinancialRecordPageDto(page, nextCursor, hasMore);
+    }
+}
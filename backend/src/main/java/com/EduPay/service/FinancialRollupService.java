@@ -0,0 +1,177 @@
+package com.EduPay.service;
+
+import com.EduPay.model.FinancialRecord;
+import com.EduPay.model.FinancialRollup;
+import com.EduPay.repository.FinancialRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Daily and monthly ledger rollups per type and category.
+ *
+ * Every FinancialRecord write adds a signed delta to its DAY and MONTH
+ * buckets (one upsert each) in the same transaction as the record itself,
+ * so time-series reads scan a handful of bucket rows instead of the ledger.
+ * {@link #backfill()} rebuilds all buckets from history with one
+ * INSERT ... SELECT per granularity; it runs at startup when the table is empty.
+ */
+@Service
+public class FinancialRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(FinancialRollupService.class);
+
+    public static final String DAY = "DAY";
+    public static final String MONTH = "MONTH";
+
+    private final FinancialRollupRepository financialRollupRepository;
+
+    public FinancialRollupService(FinancialRollupRepository financialRollupRepository) {
+        this.financialRollupRepository = financialRollupRepository;
+    }
+
+    /** Builds the buckets on first start against an existing ledger. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialize() {
+        if (financialRollupRepository.count() == 0) {
+            backfill();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Incremental maintenance (called in the transaction that writes the record)
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onRecordCreated(FinancialRecord created) {
+        apply(created, 1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onRecordUpdated(FinancialRecord before, FinancialRecord after) {
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onRecordDeleted(FinancialRecord deleted) {
+        apply(deleted, -1);
+    }
+
+    private void apply(FinancialRecord record, int sign) {
+        BigDecimal amount = sign < 0 ? record.getAmount().negate() : record.getAmount();
+        String type = record.getType().toUpperCase();
+        LocalDate day = record.getRecordDate();
+        financialRollupRepository.addToBucket(DAY, day, type, record.getCategory(), amount, sign);
+        financialRollupRepository.addToBucket(MONTH, day.withDayOfMonth(1), type, record.getCategory(), amount, sign);
+    }
+
+    /**
+     * Drops and rebuilds every bucket from the ledger.
+     */
+    @Transactional
+    public Map<String, Object> backfill() {
+        long start = System.nanoTime();
+        financialRollupRepository.deleteAllBuckets();
+        int dayBuckets = financialRollupRepository.backfill(DAY);
+        int monthBuckets = financialRollupRepository.backfill(MONTH);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("📊 Rollup backfill: {} day buckets, {} month buckets in {} ms", dayBuckets, monthBuckets, elapsedMs);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dayBuckets", dayBuckets);
+        result.put("monthBuckets", monthBuckets);
+        result.put("elapsedMs", elapsedMs);
+        return result;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Time-series queries
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Buckets of one granularity between two dates (inclusive), optionally
+     * restricted to a type and/or category.
+     */
+    public List<Map<String, Object>> getSeries(String granularity, LocalDate from, LocalDate to,
+                                               String type, String category) {
+        String g = normalizeGranularity(granularity);
+        LocalDate start = MONTH.equals(g) ? from.withDayOfMonth(1) : from;
+        List<Map<String, Object>> points = new ArrayList<>();
+        for (FinancialRollup r : financialRollupRepository.findSeries(g, start, to,
+                type == null ? null : type.toUpperCase(), category)) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("bucket", r.getBucketStart());
+            point.put("type", r.getType());
+            point.put("category", r.getCategory());
+            point.put("total", r.getTotal());
+            point.put("count", r.getRecordCount());
+            points.add(point);
+        }
+        return points;
+    }
+
+    /**
+     * Monthly totals of a year against the previous year, optionally restricted
+     * to a type and/or category (all categories are summed otherwise).
+     */
+    public Map<String, Object> getYearOverYear(int year, String type, String category) {
+        BigDecimal[] current = monthlyTotals(year, type, category);
+        BigDecimal[] previous = monthlyTotals(year - 1, type, category);
+
+        List<Map<String, Object>> months = new ArrayList<>();
+        for (int m = 0; m < 12; m++) {
+            Map<String, Object> month = new LinkedHashMap<>();
+            month.put("month", m + 1);
+            month.put("current", current[m]);
+            month.put("previous", previous[m]);
+            month.put("changePercent", previous[m].signum() == 0 ? null
+                    : current[m].subtract(previous[m])
+                            .multiply(BigDecimal.valueOf(100))
+                            .divide(previous[m].abs(), 2, RoundingMode.HALF_UP));
+            months.add(month);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("year", year);
+        result.put("previousYear", year - 1);
+        result.put("type", type);
+        result.put("category", category);
+        result.put("months", months);
+        return result;
+    }
+
+    private BigDecimal[] monthlyTotals(int year, String type, String category) {
+        BigDecimal[] totals = new BigDecimal[12];
+        Arrays.fill(totals, BigDecimal.ZERO);
+        for (FinancialRollup r : financialRollupRepository.findSeries(MONTH,
+                LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 1),
+                type == null ? null : type.toUpperCase(), category)) {
+            int m = r.getBucketStart().getMonthValue() - 1;
+            totals[m] = totals[m].add(r.getTotal());
+        }
+        return totals;
+    }
+
+    private static String normalizeGranularity(String granularity) {
+        String g = granularity == null ? MONTH : granularity.toUpperCase();
+        if (!DAY.equals(g) && !MONTH.equals(g)) {
+            throw new RuntimeException("Unsupported granularity: " + granularity + " (use DAY or MONTH)");
+        }
+        return g;
+    }
+}
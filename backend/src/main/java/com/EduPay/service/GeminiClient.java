@@ -0,0 +1,239 @@
+package com.EduPay.service;
+
+import com.EduPay.config.GeminiKeyRotator;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Asynchronous client for the native Gemini generateContent REST API.
+ *
+ * - One shared java.net.http.HttpClient (HTTP/2, keep-alive connection pool),
+ *   so chats reuse warm TLS connections instead of opening one per call.
+ * - The request body is a pre-serialized template: the system instruction and
+ *   generation config are escaped once at startup, only the prompt is escaped
+ *   per call.
+ * - The candidate text (candidates[0].content.parts[0].text) is pulled out with
+ *   a streaming JsonParser; no JsonNode tree is built.
+ *
+ * {@link #generate(String)} returns a CompletableFuture and holds no thread
+ * while waiting for a key or for Gemini. A 429 / 5xx / transport failure or a
+ * rejected key (401 / 403 / invalid-key 400) is reported to GeminiKeyRotator
+ * and the call moves to another key.
+ */
+@Component
+public class GeminiClient {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiClient.class);
+
+    private static final String BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models/";
+    private static final int MAX_KEY_ATTEMPTS = 3;
+    private static final int MAX_LOGGED_BODY_CHARS = 500;
+
+    private final GeminiKeyRotator geminiKeyRotator;
+    private final JsonFactory jsonFactory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final byte[] bodyPrefix;
+    private final byte[] bodySuffix;
+    private final Duration requestTimeout;
+    private final Duration keyAcquireTimeout;
+
+    public GeminiClient(GeminiKeyRotator geminiKeyRotator,
+                        @Value("${spring.ai.openai.chat.options.model:gemini-2.0-flash}") String model,
+                        @Value("${edupay.ai.system-prompt:You are EduPay AI Assistant.}") String systemPrompt,
+                        @Value("${edupay.ai.connect-timeout-ms:5000}") long connectTimeoutMs,
+                        @Value("${edupay.ai.request-timeout-ms:30000}") long requestTimeoutMs,
+                        @Value("${edupay.ai.key-acquire-timeout-ms:10000}") long keyAcquireTimeoutMs) {
+        this.geminiKeyRotator = geminiKeyRotator;
+        this.jsonFactory = objectMapper.getFactory();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+        this.endpoint = URI.create(BASE_URL + model + ":generateContent");
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.keyAcquireTimeout = Duration.ofMillis(keyAcquireTimeoutMs);
+
+        // {"systemInstruction":{...},"generationConfig":{...},"contents":[{"role":"user","parts":[{"text":<prompt>}]}]}
+        Map<String, Object> fixedPart = Map.of(
+                "systemInstruction", Map.of("parts", List.of(Map.of("text", systemPrompt))),
+                "generationConfig", Map.of("temperature", 0.7, "maxOutputTokens", 1024));
+        String fixedJson = toJson(fixedPart);
+        this.bodyPrefix = (fixedJson.substring(0, fixedJson.length() - 1)
+                + ",\"contents\":[{\"role\":\"user\",\"parts\":[{\"text\":").getBytes(StandardCharsets.UTF_8);
+        this.bodySuffix = "}]}]}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends one prompt and completes with the first candidate's text.
+     * Fails with a RuntimeException ("Gemini API error: ...") once every key
+     * attempt is used up or on a non-retryable error.
+     */
+    public CompletableFuture<String> generate(String prompt) {
+        byte[] body = requestBody(prompt);
+        int maxAttempts = Math.min(geminiKeyRotator.keyCount(), MAX_KEY_ATTEMPTS);
+        return attempt(body, 1, maxAttempts);
+    }
+
+    private CompletableFuture<String> attempt(byte[] body, int attempt, int maxAttempts) {
+        return geminiKeyRotator.acquire(keyAcquireTimeout).thenCompose(lease -> {
+            HttpRequest request = HttpRequest.newBuilder(endpoint)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .header("x-goog-api-key", lease.apiKey())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .handle((response, error) -> {
+                        if (error != null) {
+                            lease.serverError();
+                            return retryOrFail(body, attempt, maxAttempts, lease.maskedKey(), rootCause(error).toString());
+                        }
+                        int status = response.statusCode();
+                        if (status == 429) {
+                            lease.rateLimited(retryAfter(response));
+                            return retryOrFail(body, attempt, maxAttempts, lease.maskedKey(), "HTTP 429");
+                        }
+                        if (status >= 500) {
+                            lease.serverError();
+                            return retryOrFail(body, attempt, maxAttempts, lease.maskedKey(), "HTTP " + status);
+                        }
+                        if (status == 401 || status == 403 || (status == 400 && isInvalidKey(response.body()))) {
+                            lease.keyRejected(status);
+                            return retryOrFail(body, attempt, maxAttempts, lease.maskedKey(), "HTTP " + status);
+                        }
+                        lease.success();
+                        if (status >= 300) {
+                            log.error("Gemini API returned status {}: {}", status, truncate(response.body()));
+                            return CompletableFuture.<String>failedFuture(
+                                    new RuntimeException("Gemini API error: HTTP " + status));
+                        }
+                        return CompletableFuture.completedFuture(extractText(response.body()));
+                    })
+                    .thenCompose(f -> f);
+        });
+    }
+
+    private CompletableFuture<String> retryOrFail(byte[] body, int attempt, int maxAttempts,
+                                                  String maskedKey, String reason) {
+        if (attempt >= maxAttempts) {
+            return CompletableFuture.failedFuture(new RuntimeException("Gemini API error: " + reason));
+        }
+        log.warn("Gemini call on key ****{} failed with {}, retrying on another key ({}/{})",
+                maskedKey, reason, attempt, maxAttempts);
+        return attempt(body, attempt + 1, maxAttempts);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Request / response encoding
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private byte[] requestBody(String prompt) {
+        byte[] text = toJson(prompt).getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[bodyPrefix.length + text.length + bodySuffix.length];
+        System.arraycopy(bodyPrefix, 0, body, 0, bodyPrefix.length);
+        System.arraycopy(text, 0, body, bodyPrefix.length, text.length);
+        System.arraycopy(bodySuffix, 0, body, bodyPrefix.length + text.length, bodySuffix.length);
+        return body;
+    }
+
+    /**
+     * Walks the response tokens straight to candidates[0].content.parts[0].text.
+     */
+    private String extractText(byte[] body) {
+        try (JsonParser p = jsonFactory.createParser(body)) {
+            if (p.nextToken() == JsonToken.START_OBJECT
+                    && seekField(p, "candidates") && enterFirstObject(p)
+                    && seekField(p, "content") && p.currentToken() == JsonToken.START_OBJECT
+                    && seekField(p, "parts") && enterFirstObject(p)
+                    && seekField(p, "text")) {
+                return p.getValueAsString();
+            }
+            return "AI returned an empty response.";
+        } catch (IOException e) {
+            throw new RuntimeException("Gemini API error: unreadable response", e);
+        }
+    }
+
+    /** Advances through the current object to {@code field}, leaving the parser on its value. */
+    private static boolean seekField(JsonParser p, String field) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if (field.equals(name)) {
+                return true;
+            }
+            if (value.isStructStart()) {
+                p.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    private static boolean enterFirstObject(JsonParser p) throws IOException {
+        return p.currentToken() == JsonToken.START_ARRAY && p.nextToken() == JsonToken.START_OBJECT;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize Gemini request", e);
+        }
+    }
+
+    /** Gemini answers a bad / expired key with 400 INVALID_ARGUMENT, reason API_KEY_INVALID. */
+    private static boolean isInvalidKey(byte[] body) {
+        String text = new String(body, StandardCharsets.UTF_8);
+        return text.contains("API_KEY_INVALID") || text.contains("API key not valid") || text.contains("API key expired");
+    }
+
+    /** Seconds form of the Retry-After header, if the gateway sent one. */
+    private static Duration retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+                .map(String::trim)
+                .filter(v -> v.chars().allMatch(Character::isDigit) && !v.isEmpty())
+                .map(v -> Duration.ofSeconds(Long.parseLong(v)))
+                .orElse(null);
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static String truncate(byte[] body) {
+        String text = new String(body, StandardCharsets.UTF_8);
+        return text.length() > MAX_LOGGED_BODY_CHARS ? text.substring(0, MAX_LOGGED_BODY_CHARS) + "…" : text;
+    }
+}
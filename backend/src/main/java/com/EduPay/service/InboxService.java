@@ -0,0 +1,304 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.InboxItemDto;
+import com.EduPay.dto.InboxPageDto;
+import com.EduPay.exception.ResourceNotFoundException;
+import com.EduPay.model.Announcement;
+import com.EduPay.model.AnnouncementRead;
+import com.EduPay.model.AnnouncementReadCursor;
+import com.EduPay.model.Notification;
+import com.EduPay.repository.AnnouncementReadCursorRepository;
+import com.EduPay.repository.AnnouncementReadRepository;
+import com.EduPay.repository.AnnouncementRepository;
+import com.EduPay.repository.NotificationRepository;
+import com.EduPay.repository.StudentRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fan-out-on-read notification inbox.
+ *
+ * Broadcast announcements are stored once with their target audience
+ * (ALL_STUDENTS, CLASS:<std>, STUDENT:<id>). A user's inbox is assembled at
+ * read time from their personal Notification rows plus the announcements
+ * addressed to their audiences; read state for announcements comes from the
+ * user's read cursor and per-announcement read markers.
+ */
+@Service
+public class InboxService {
+
+    /** Read cursor for users who have never marked anything read. */
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /** Keyset position before the newest possible item (first feed page). */
+    private static final LocalDateTime FEED_HEAD = LocalDateTime.of(9999, 12, 31, 23, 59);
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /** Feed order: createdAt DESC, personal notifications before announcements at equal times, id DESC. */
+    private static final Comparator<InboxItemDto> FEED_ORDER =
+            Comparator.comparing(InboxItemDto::getCreatedAt).reversed()
+                    .thenComparing(item -> "ANNOUNCEMENT".equals(item.getSource()))
+                    .thenComparing(InboxService::itemId, Comparator.reverseOrder());
+
+    private final NotificationRepository notificationRepository;
+    private final AnnouncementRepository announcementRepository;
+    private final AnnouncementReadRepository announcementReadRepository;
+    private final AnnouncementReadCursorRepository announcementReadCursorRepository;
+    private final StudentRepository studentRepository;
+
+    public InboxService(NotificationRepository notificationRepository,
+                        AnnouncementRepository announcementRepository,
+                        AnnouncementReadRepository announcementReadRepository,
+                        AnnouncementReadCursorRepository announcementReadCursorRepository,
+                        StudentRepository studentRepository) {
+        this.notificationRepository = notificationRepository;
+        this.announcementRepository = announcementRepository;
+        this.announcementReadRepository = announcementReadRepository;
+        this.announcementReadCursorRepository = announcementReadCursorRepository;
+        this.studentRepository = studentRepository;
+    }
+
+    /**
+     * Personal notifications and audience announcements for the user, newest first.
+     */
+    public List<InboxItemDto> getInbox(Long userId, String role) {
+        List<InboxItemDto> items = new ArrayList<>();
+        for (Notification n : notificationRepository.findByUserIdOrderByCreatedAtDesc(userId)) {
+            items.add(toItem(n));
+        }
+
+        List<String> audiences = audiencesFor(userId, role);
+        if (!audiences.isEmpty()) {
+            List<Announcement> announcements =
+                    announcementRepository.findByTargetAudienceInOrderByPublishDateDesc(audiences);
+            LocalDateTime cursor = readCursor(userId);
+            Set<Long> marked = announcements.isEmpty() ? Set.of() : new HashSet<>(
+                    announcementReadRepository.findReadAnnouncementIds(userId,
+                            announcements.stream().map(Announcement::getId).toList()));
+            for (Announcement a : announcements) {
+                boolean read = !a.getPublishDate().isAfter(cursor) || marked.contains(a.getId());
+                items.add(toItem(a, read));
+            }
+        }
+
+        items.sort(Comparator.comparing(InboxItemDto::getCreatedAt).reversed());
+        return items;
+    }
+
+    /**
+     * One page of the inbox feed, keyset-paginated on (createdAt, id).
+     *
+     * Each source is read with an index-backed "after cursor ... LIMIT size+1"
+     * query, the two slices are merged, and the first {@code size} items are
+     * returned — cost depends on the page size, not the length of the history.
+     *
+     * @param cursor     nextCursor from the previous page, or null for the first page
+     * @param unreadOnly only unread items
+     */
+    public InboxPageDto getFeed(Long userId, String role,
+                                String cursor, Integer size, boolean unreadOnly) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Limit limit = Limit.of(pageSize + 1);
+
+        LocalDateTime before = FEED_HEAD;
+        long notificationTieId = 0;
+        long announcementTieId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            FeedCursor c = FeedCursor.decode(cursor);
+            before = c.createdAt();
+            // Notifications sort before announcements at the same instant, so an
+            // announcement cursor has already passed every notification at that time
+            notificationTieId = c.announcement() ? 0 : c.id();
+            announcementTieId = c.announcement() ? c.id() : Long.MAX_VALUE;
+        }
+
+        List<InboxItemDto> items = new ArrayList<>(unreadOnly
+                ? notificationRepository.findUnreadFeedPage(userId, before, notificationTieId, limit)
+                : notificationRepository.findFeedPage(userId, before, notificationTieId, limit));
+
+        List<String> audiences = audiencesFor(userId, role);
+        if (!audiences.isEmpty()) {
+            for (InboxItemDto a : announcementRepository.findFeedPage(audiences, userId, readCursor(userId),
+                    before, announcementTieId, unreadOnly, limit)) {
+                a.setType(BroadcastFanoutService.notificationType(a.getType())); // query returns priority
+                items.add(a);
+            }
+        }
+
+        items.sort(FEED_ORDER);
+        boolean hasMore = items.size() > pageSize;
+        List<InboxItemDto> page = hasMore ? new ArrayList<>(items.subList(0, pageSize)) : items;
+        String nextCursor = hasMore ? FeedCursor.of(page.get(page.size() - 1)).encode() : null;
+        return new InboxPageDto(page, nextCursor, hasMore);
+    }
+
+    /**
+     * Unread personal notifications + unread audience announcements.
+     */
+    public long getUnreadCount(Long userId, String role) {
+        long count = notificationRepository.countByUserIdAndIsReadFalse(userId);
+        List<String> audiences = audiencesFor(userId, role);
+        if (!audiences.isEmpty()) {
+            count += announcementRepository.countUnreadForAudiences(audiences, readCursor(userId), userId);
+        }
+        return count;
+    }
+
+    /**
+     * Records a read marker for one audience announcement (no-op if already read).
+     * Only announcements in the user's own audiences (the ones their feed shows)
+     * can be marked; any other id is reported as not found.
+     *
+     * @return true if the announcement was unread before this call
+     */
+    @Transactional
+    public boolean markAnnouncementRead(Long userId, String role, Long announcementId) {
+        Announcement announcement = announcementRepository.findById(announcementId)
+                .filter(a -> audiencesFor(userId, role).contains(a.getTargetAudience()))
+                .orElseThrow(() -> new ResourceNotFoundException("Announcement not found: " + announcementId));
+        if (announcementReadRepository.existsByUserIdAndAnnouncementId(userId, announcementId)) {
+            return false;
+        }
+        announcementReadRepository.save(
+                new AnnouncementRead(null, userId, announcementId, LocalDateTime.now()));
+        return announcement.getPublishDate().isAfter(readCursor(userId));
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Bulk read receipts
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Marks everything in the inbox read: one UPDATE for personal notifications
+     * and a forward move of the announcement read cursor to now.
+     *
+     * @return notifications / announcements / marked counts of items that flipped to read
+     */
+    @Transactional
+    public Map<String, Integer> markAllRead(Long userId, String role) {
+        return markReadUpTo(userId, role, LocalDateTime.now());
+    }
+
+    /**
+     * Marks every inbox item created at or before {@code upTo} read.
+     * {@code upTo} is clamped to now: the announcement cursor only moves
+     * forward, so a future timestamp would silently mark announcements that
+     * don't exist yet as read, with no way back.
+     */
+    @Transactional
+    public Map<String, Integer> markReadUpTo(Long userId, String role, LocalDateTime before) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime upTo = before.isAfter(now) ? now : before;
+        int notifications = notificationRepository.markReadUpTo(userId, upTo);
+        int announcements = 0;
+        List<String> audiences = audiencesFor(userId, role);
+        if (!audiences.isEmpty()) {
+            LocalDateTime cursor = readCursor(userId);
+            if (upTo.isAfter(cursor)) {
+                announcements = (int) announcementRepository.countUnreadForAudiencesUpTo(
+                        audiences, cursor, upTo, userId);
+                announcementReadCursorRepository.advance(userId, upTo);
+            }
+        }
+        return readCounts(notifications, announcements);
+    }
+
+    /**
+     * Marks the listed personal notifications and audience announcements read;
+     * ids that are foreign, unknown or already read are ignored.
+     */
+    @Transactional
+    public Map<String, Integer> markRead(Long userId, String role,
+                                         List<Long> notificationIds, List<Long> announcementIds) {
+        int notifications = notificationIds == null || notificationIds.isEmpty() ? 0
+                : notificationRepository.markReadByIds(userId, notificationIds);
+        int announcements = 0;
+        List<String> audiences = audiencesFor(userId, role);
+        if (announcementIds != null && !announcementIds.isEmpty() && !audiences.isEmpty()) {
+            announcements = announcementReadRepository.insertUnreadMarkers(
+                    userId, announcementIds, audiences, readCursor(userId), LocalDateTime.now());
+        }
+        return readCounts(notifications, announcements);
+    }
+
+    private static Map<String, Integer> readCounts(int notifications, int announcements) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("notifications", notifications);
+        counts.put("announcements", announcements);
+        counts.put("marked", notifications + announcements);
+        return counts;
+    }
+
+    /**
+     * Audience keys a user receives: students get ALL_STUDENTS plus their class and
+     * personal STUDENT:<id> audience (student linked by students.user_id).
+     */
+    public List<String> audiencesFor(Long userId, String role) {
+        if (!"STUDENT".equalsIgnoreCase(role)) {
+            return List.of();
+        }
+        List<String> audiences = new ArrayList<>(List.of("ALL_STUDENTS", "ALL"));
+        studentRepository.findByUserId(userId).ifPresent(s -> {
+            audiences.add("CLASS:" + s.getStandard());
+            audiences.add("STUDENT:" + s.getId());
+        });
+        return audiences;
+    }
+
+    LocalDateTime readCursor(Long userId) {
+        return announcementReadCursorRepository.findById(userId)
+                .map(AnnouncementReadCursor::getLastReadAt)
+                .orElse(EPOCH);
+    }
+
+    private static Long itemId(InboxItemDto item) {
+        return item.getId() != null ? item.getId() : item.getAnnouncementId();
+    }
+
+    /** Keyset position of the last item on a page, encoded as URL-safe base64 of "createdAt_N|A_id". */
+    private record FeedCursor(LocalDateTime createdAt, boolean announcement, long id) {
+
+        static FeedCursor of(InboxItemDto item) {
+            return new FeedCursor(item.getCreatedAt(), "ANNOUNCEMENT".equals(item.getSource()), itemId(item));
+        }
+
+        String encode() {
+            String raw = createdAt + "_" + (announcement ? "A" : "N") + "_" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static FeedCursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_");
+                return new FeedCursor(LocalDateTime.parse(parts[0]), "A".equals(parts[1]), Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid feed cursor: " + cursor);
+            }
+        }
+    }
+
+    // --- Helper methods for DTO conversion ---
+    private InboxItemDto toItem(Notification n) {
+        return new InboxItemDto(n.getId(), null, "NOTIFICATION", n.getTitle(), n.getMessage(),
+                n.getType(), n.getIsRead(), n.getCreatedAt());
+    }
+
+    private InboxItemDto toItem(Announcement a, boolean read) {
+        return new InboxItemDto(null, a.getId(), "ANNOUNCEMENT", a.getTitle(), a.getContent(),
+                BroadcastFanoutService.notificationType(a.getPriority()), read, a.getPublishDate());
+    }
+}
@@ -3,14 +3,14 @@ package com.EduPay.service;
 import com.EduPay.model.Fee;
 import com.EduPay.model.Notification;
 import com.EduPay.model.Student;
-import com.EduPay.model.User;
+import com.EduPay.model.StudentBalance;
 import com.EduPay.repository.FeeRepository;
 import com.EduPay.repository.NotificationRepository;
 import com.EduPay.repository.StudentRepository;
-import com.EduPay.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -18,8 +18,14 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Service for sending real-time WebSocket notifications.
@@ -35,21 +41,30 @@ public class NotificationService {
     private final ChatClient chatClient;
     private final StudentRepository studentRepository;
     private final FeeRepository feeRepository;
-    private final UserRepository userRepository;
     private final NotificationRepository notificationRepository;
+    private final ReminderTemplateCache reminderTemplateCache;
+    private final UnreadCounterService unreadCounterService;
+    private final StudentBalanceService studentBalanceService;
+
+    @Value("${edupay.notification.max-concurrent-llm-calls:8}")
+    private int maxConcurrentLlmCalls;
 
     public NotificationService(SimpMessagingTemplate messagingTemplate,
                                ChatClient chatClient,
                                StudentRepository studentRepository,
                                FeeRepository feeRepository,
-                               UserRepository userRepository,
-                               NotificationRepository notificationRepository) {
+                               NotificationRepository notificationRepository,
+                               ReminderTemplateCache reminderTemplateCache,
+                               UnreadCounterService unreadCounterService,
+                               StudentBalanceService studentBalanceService) {
         this.messagingTemplate = messagingTemplate;
         this.chatClient = chatClient;
         this.studentRepository = studentRepository;
         this.feeRepository = feeRepository;
-        this.userRepository = userRepository;
         this.notificationRepository = notificationRepository;
+        this.reminderTemplateCache = reminderTemplateCache;
+        this.unreadCounterService = unreadCounterService;
+        this.studentBalanceService = studentBalanceService;
     }
 
     /**
@@ -58,147 +73,237 @@ public class NotificationService {
      */
     @Scheduled(cron = "${edupay.notification.cron}")
     public void checkAndSendFeeReminders() {
-        log.info("🔔 Running scheduled fee reminder check...");
-        List<Student> allStudents = studentRepository.findAll();
-
-        for (Student student : allStudents) {
-            List<Fee> pendingFees = feeRepository.findByStudent(student).stream()
-                    .filter(fee -> fee.getOutstandingAmount() > 0)
-                    .toList();
-
-            if (!pendingFees.isEmpty()) {
-                sendAIGeneratedReminder(student, pendingFees);
-            }
-        }
+        runReminderPipeline();
     }
 
     /**
      * Manually trigger reminder generation for all students with pending fees.
      * Called by admin via NotificationController.
      */
-    public void triggerRemindersForAllPending() {
-        checkAndSendFeeReminders();
+    public Map<String, Object> triggerRemindersForAllPending() {
+        return runReminderPipeline();
     }
 
     /**
-     * Generate and send an AI-drafted personalized fee reminder.
+     * Reminder template cache metrics (hit ratio, LLM calls avoided).
      */
-    private void sendAIGeneratedReminder(Student student, List<Fee> pendingFees) {
-        try {
-            // Build fee summary for prompt
-            double totalOutstanding = pendingFees.stream()
-                    .mapToDouble(Fee::getOutstandingAmount)
-                    .sum();
-
-            StringBuilder feeSummary = new StringBuilder();
-            for (Fee fee : pendingFees) {
-                feeSummary.append(String.format("- %s: ₹%.2f due by %s%n",
-                        fee.getFeeType(), fee.getOutstandingAmount(), fee.getDueDate()));
-            }
+    public Map<String, Object> getReminderTemplateCacheStats() {
+        return reminderTemplateCache.stats();
+    }
 
-            // Use AI to draft a polite, personalized reminder
-            String prompt = String.format("""
-                    Draft a polite, empathetic, and professional fee payment reminder message.
-                    Keep it concise (2-3 sentences max).
-                    
-                    Student Name: %s
-                    Class: %s
-                    Total Outstanding: ₹%.2f
-                    Fee Details:
-                    %s
-                    
-                    The message should:
-                    - Address the parent respectfully
-                    - Mention the outstanding amount
-                    - Be encouraging, not threatening
-                    - Suggest early payment benefits if applicable
-                    """,
-                    student.getName(), student.getStandard(),
-                    totalOutstanding, feeSummary.toString());
-
-            String aiMessage;
-            try {
-                aiMessage = chatClient.prompt()
-                        .user(prompt)
-                        .call()
-                        .content();
-            } catch (Exception e) {
-                // Fallback to template message if AI is unavailable
-                aiMessage = String.format(
-                        "Dear Parent, this is a friendly reminder that ₹%.2f in fees is pending for %s (Class %s). " +
-                                "Please complete the payment at your earliest convenience. Thank you!",
-                        totalOutstanding, student.getName(), student.getStandard());
-                log.warn("AI unavailable for reminder generation, using template: {}", e.getMessage());
+    /**
+     * One reminder run:
+     *   1. A single query loads every outstanding fee with its student, grouped per student
+     *   2. Each student's user id comes from the students.user_id link (no extra query)
+     *   3. Each student's reminder is generated on a virtual thread; at most
+     *      maxConcurrentLlmCalls prompts are in flight at once
+     *   4. Students with the same fee profile share one AI-drafted template (ReminderTemplateCache)
+     *
+     * Returns the run report: { "students", "sent", "skipped", "failed", "aiFallbacks", "elapsedMs", "remindersPerSecond", "templateCache" }
+     */
+    public Map<String, Object> runReminderPipeline() {
+        log.info("🔔 Running fee reminder check...");
+        long startNanos = System.nanoTime();
+
+        reminderTemplateCache.clear();
+        Map<Long, List<Fee>> pendingByStudent = feeRepository.findAllOutstandingWithStudent().stream()
+                .collect(Collectors.groupingBy(f -> f.getStudent().getId(), LinkedHashMap::new, Collectors.toList()));
+
+        Map<Long, StudentBalance> balances = studentBalanceService.getBalances(pendingByStudent.keySet());
+
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger aiFallbacks = new AtomicInteger();
+        Semaphore llmPermits = new Semaphore(maxConcurrentLlmCalls);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<Fee> pendingFees : pendingByStudent.values()) {
+                Student student = pendingFees.get(0).getStudent();
+                Long userId = student.getUserId();
+                if (userId == null) {
+                    log.warn("No user account found for student: {}", student.getStudentId());
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                executor.submit(() -> {
+                    try {
+                        if (!sendAIGeneratedReminder(student, userId, pendingFees,
+                                balances.get(student.getId()), llmPermits)) {
+                            aiFallbacks.incrementAndGet();
+                        }
+                        sent.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        log.error("❌ Failed to send reminder for student {}: {}",
+                                student.getStudentId(), e.getMessage(), e);
+                    }
+                });
             }
+        } // close() waits for every submitted reminder
 
-            // Also generate an AI insight
-            String insightPrompt = String.format("""
-                    Based on the following fee data, generate ONE short financial insight or tip (1 sentence).
-                    Total Outstanding: ₹%.2f
-                    Earliest Due Date: %s
-                    Number of pending fees: %d
-                    
-                    Example: "Paying before [date] could help you avoid a late fee surcharge."
-                    """,
-                    totalOutstanding,
-                    pendingFees.stream().map(Fee::getDueDate).min(LocalDate::compareTo).orElse(LocalDate.now()),
-                    pendingFees.size());
-
-            String aiInsight;
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        long remindersPerSecond = elapsedMs > 0 ? sent.get() * 1000L / elapsedMs : sent.get();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("students", pendingByStudent.size());
+        report.put("sent", sent.get());
+        report.put("skipped", skipped.get());
+        report.put("failed", failed.get());
+        report.put("aiFallbacks", aiFallbacks.get());
+        report.put("elapsedMs", elapsedMs);
+        report.put("remindersPerSecond", remindersPerSecond);
+        report.put("templateCache", reminderTemplateCache.stats());
+        log.info("🔔 Reminder run finished: {}", report);
+        return report;
+    }
+
+    /**
+     * Generate and send an AI-drafted personalized fee reminder.
+     * The wording comes from the ReminderTemplateCache bucket for this student's
+     * fee profile; the LLM is only called the first time a bucket is seen in a run.
+     *
+     * @return true if the AI drafted the template, false if the fallback template was used
+     */
+    private boolean sendAIGeneratedReminder(Student student, Long userId, List<Fee> pendingFees,
+                                            StudentBalance balance, Semaphore llmPermits) {
+        LocalDate today = LocalDate.now();
+        double totalOutstanding;
+        LocalDate earliestDue;
+        if (balance != null && balance.getEarliestDueDate() != null) {
+            totalOutstanding = balance.getOutstanding();
+            earliestDue = balance.getEarliestDueDate();
+        } else {
+            // Projection not built yet — derive from the fees already in hand
+            totalOutstanding = pendingFees.stream().mapToDouble(Fee::getOutstandingAmount).sum();
+            earliestDue = pendingFees.stream().map(Fee::getDueDate).min(LocalDate::compareTo).orElse(today);
+        }
+
+        ReminderTemplateCache.FeeProfile profile = ReminderTemplateCache.profile(pendingFees, today);
+        ReminderTemplateCache.ReminderTemplate template =
+                reminderTemplateCache.get(profile, () -> draftReminderTemplate(profile, llmPermits));
+
+        String aiMessage = ReminderTemplateCache.fill(template.reminder(), student.getName(),
+                student.getStandard(), totalOutstanding, earliestDue, pendingFees.size());
+        String aiInsight = ReminderTemplateCache.fill(template.insight(), student.getName(),
+                student.getStandard(), totalOutstanding, earliestDue, pendingFees.size());
+
+        // Save notification to DB
+        long counterMark = unreadCounterService.mark();
+        Notification notification = Notification.builder()
+                .userId(userId)
+                .title("Fee Payment Reminder")
+                .message(aiMessage)
+                .type("FEE_REMINDER")
+                .isRead(false)
+                .createdAt(LocalDateTime.now())
+                .build();
+        notificationRepository.save(notification);
+
+        // Build WebSocket payload
+        Map<String, Object> wsPayload = new HashMap<>();
+        wsPayload.put("id", notification.getId());
+        wsPayload.put("title", notification.getTitle());
+        wsPayload.put("message", aiMessage);
+        wsPayload.put("type", "FEE_REMINDER");
+        wsPayload.put("insight", aiInsight);
+        wsPayload.put("totalOutstanding", totalOutstanding);
+        wsPayload.put("timestamp", notification.getCreatedAt().toString());
+
+        // Push via WebSocket to the specific user's topic
+        messagingTemplate.convertAndSend(
+                "/topic/notifications/" + userId, wsPayload);
+        unreadCounterService.increment(userId, counterMark);
+
+        log.debug("📤 Sent AI reminder to student {} (userId: {}) [bucket={}]",
+                student.getStudentId(), userId, profile);
+        return template.aiDrafted();
+    }
+
+    /**
+     * Asks the AI for a reminder + insight template for one fee-profile bucket.
+     * Student-specific values are left as slots and filled per student.
+     */
+    private ReminderTemplateCache.ReminderTemplate draftReminderTemplate(ReminderTemplateCache.FeeProfile profile,
+                                                                         Semaphore llmPermits) {
+        String prompt = String.format("""
+                Draft a polite, empathetic, and professional fee payment reminder message TEMPLATE.
+                Keep it concise (2-3 sentences max).
+                
+                Fee profile shared by every recipient:
+                Pending fee types: %s
+                Outstanding amount band: %s
+                Due date band: %s
+                
+                Use these placeholders verbatim instead of real values:
+                %s = student name, %s = class, %s = total outstanding amount (number only, after ₹),
+                %s = earliest due date, %s = number of pending fees
+                
+                The message should:
+                - Address the parent respectfully
+                - Mention the outstanding amount
+                - Be encouraging, not threatening
+                - Suggest early payment benefits if applicable
+                
+                Also generate ONE short financial insight or tip (1 sentence),
+                e.g. "Paying before %s could help you avoid a late fee surcharge."
+                
+                Respond in exactly this format:
+                REMINDER: <reminder message>
+                INSIGHT: <insight sentence>
+                """,
+                String.join(", ", profile.feeTypes()), profile.amountBand(), profile.dueBand(),
+                ReminderTemplateCache.SLOT_NAME, ReminderTemplateCache.SLOT_CLASS,
+                ReminderTemplateCache.SLOT_AMOUNT, ReminderTemplateCache.SLOT_DUE_DATE,
+                ReminderTemplateCache.SLOT_FEE_COUNT, ReminderTemplateCache.SLOT_DUE_DATE);
+
+        String reminder = null;
+        String insight = null;
+        try {
+            llmPermits.acquire();
             try {
-                aiInsight = chatClient.prompt()
-                        .user(insightPrompt)
+                String response = chatClient.prompt()
+                        .user(prompt)
                         .call()
                         .content();
-            } catch (Exception e) {
-                aiInsight = String.format("Early payment could save you from late fee charges. Due date: %s",
-                        pendingFees.stream().map(Fee::getDueDate).min(LocalDate::compareTo).orElse(LocalDate.now()));
+                int insightAt = response != null ? response.indexOf("INSIGHT:") : -1;
+                if (insightAt >= 0) {
+                    reminder = response.substring(0, insightAt).replace("REMINDER:", "").trim();
+                    insight = response.substring(insightAt + "INSIGHT:".length()).trim();
+                } else if (response != null) {
+                    reminder = response.replace("REMINDER:", "").trim();
+                }
+            } finally {
+                llmPermits.release();
             }
-
-            // Find the user account linked to this student (via admin or student's own account)
-            Long userId = findUserIdForStudent(student);
-            if (userId == null) {
-                log.warn("No user account found for student: {}", student.getStudentId());
-                return;
-            }
-
-            // Save notification to DB
-            Notification notification = Notification.builder()
-                    .userId(userId)
-                    .title("Fee Payment Reminder")
-                    .message(aiMessage)
-                    .type("FEE_REMINDER")
-                    .isRead(false)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-            notificationRepository.save(notification);
-
-            // Build WebSocket payload
-            Map<String, Object> wsPayload = new HashMap<>();
-            wsPayload.put("id", notification.getId());
-            wsPayload.put("title", notification.getTitle());
-            wsPayload.put("message", aiMessage);
-            wsPayload.put("type", "FEE_REMINDER");
-            wsPayload.put("insight", aiInsight);
-            wsPayload.put("totalOutstanding", totalOutstanding);
-            wsPayload.put("timestamp", notification.getCreatedAt().toString());
-
-            // Push via WebSocket to the specific user's topic
-            messagingTemplate.convertAndSend(
-                    "/topic/notifications/" + userId, wsPayload);
-
-            log.info("📤 Sent AI reminder to student {} (userId: {})", student.getStudentId(), userId);
-
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            log.error("❌ Failed to send reminder for student {}: {}",
-                    student.getStudentId(), e.getMessage(), e);
+            log.warn("AI unavailable for reminder generation, using template: {}", e.getMessage());
         }
+
+        // A template that does not carry the amount slot would send the wrong figure — discard it
+        boolean aiDrafted = reminder != null && reminder.contains(ReminderTemplateCache.SLOT_AMOUNT);
+        if (!aiDrafted) {
+            // Fallback to template message if AI is unavailable
+            reminder = "Dear Parent, this is a friendly reminder that ₹" + ReminderTemplateCache.SLOT_AMOUNT
+                    + " in fees is pending for " + ReminderTemplateCache.SLOT_NAME
+                    + " (Class " + ReminderTemplateCache.SLOT_CLASS + "). "
+                    + "Please complete the payment at your earliest convenience. Thank you!";
+        }
+        if (insight == null || insight.isBlank()) {
+            insight = "Early payment could save you from late fee charges. Due date: "
+                    + ReminderTemplateCache.SLOT_DUE_DATE;
+        }
+        log.debug("🧩 Drafted reminder template for bucket [{}] (ai={})", profile, aiDrafted);
+        return new ReminderTemplateCache.ReminderTemplate(reminder, insight, aiDrafted);
     }
 
     /**
      * Send a custom notification to a specific user via WebSocket.
      */
     public void sendNotification(Long userId, String title, String message, String type) {
+        long counterMark = unreadCounterService.mark();
         Notification notification = Notification.builder()
                 .userId(userId)
                 .title(title)
@@ -217,15 +322,6 @@ public class NotificationService {
         wsPayload.put("timestamp", notification.getCreatedAt().toString());
 
         messagingTemplate.convertAndSend("/topic/notifications/" + userId, wsPayload);
-    }
-
-    /**
-     * Find the user ID associated with a student.
-     * Tries to match by studentId -> username in users table.
-     */
-    private Long findUserIdForStudent(Student student) {
-        return userRepository.findByUsername(student.getStudentId())
-                .map(User::getId)
-                .orElse(null);
+        unreadCounterService.increment(userId, counterMark);
     }
 }
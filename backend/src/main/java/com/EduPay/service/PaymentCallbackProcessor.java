@@ -0,0 +1,271 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.PaymentCallback;
+import com.EduPay.model.PaymentCallbackEvent;
+import com.EduPay.repository.PaymentCallbackEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Idempotent ingestion and background application of payment gateway callbacks.
+ *
+ * The webhook thread only inserts the callback into payment_callback_events
+ * (unique on the gateway payment id, so retries are dropped) and acknowledges.
+ * A small pool of workers claims queued events with FOR UPDATE SKIP LOCKED and
+ * applies each one through PaymentService in its own transaction; failures are
+ * retried up to max-attempts with exponential backoff (next_attempt_at), so a
+ * short database outage does not use up every attempt at once, and events
+ * claimed by a worker that died are reclaimed after the stale timeout.
+ *
+ * Callbacks that can't be credited (see PaymentService.CallbackOutcome) end in
+ * state PARKED with the reason in last_error — they need a refund or manual
+ * allocation and are counted in the metrics.
+ */
+@Service
+public class PaymentCallbackProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentCallbackProcessor.class);
+
+    private static final Duration STALE_CLAIM = Duration.ofMinutes(5);
+
+    private final PaymentCallbackEventRepository callbackEventRepository;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService workers;
+    private final int workerCount;
+    private final long pollMillis;
+
+    @Value("${edupay.payments.callback-batch-size:50}")
+    private int batchSize;
+
+    @Value("${edupay.payments.callback-max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${edupay.payments.callback-retry-backoff-ms:5000}")
+    private long retryBackoffMillis;
+
+    @Value("${edupay.payments.callback-retry-max-backoff-ms:300000}")
+    private long retryMaxBackoffMillis;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong ignored = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyWindow ackLatency = new LatencyWindow(1024);
+    private final LatencyWindow applyLatency = new LatencyWindow(1024);
+
+    public PaymentCallbackProcessor(PaymentCallbackEventRepository callbackEventRepository,
+                                    PaymentService paymentService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${edupay.payments.callback-workers:4}") int workerCount,
+                                    @Value("${edupay.payments.callback-poll-ms:500}") long pollMillis) {
+        this.callbackEventRepository = callbackEventRepository;
+        this.paymentService = paymentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workerCount = workerCount;
+        this.pollMillis = pollMillis;
+        this.workers = Executors.newScheduledThreadPool(workerCount,
+                Thread.ofPlatform().name("payment-callback-", 0).daemon(true).factory());
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        for (int i = 0; i < workerCount; i++) {
+            workers.scheduleWithFixedDelay(this::drain, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Ingestion (webhook thread)
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Records the callback once and returns immediately.
+     *
+     * @return true if accepted, false if it duplicates an already received callback
+     */
+    public boolean ingest(PaymentCallback callback) {
+        long start = System.nanoTime();
+        String dedupKey = dedupKey(callback);
+        Integer inserted = transactionTemplate.execute(status -> callbackEventRepository.enqueue(
+                dedupKey, callback.getRazorpayPaymentId(), callback.getRazorpayOrderId(),
+                callback.getRazorpaySignature(), callback.getStatus(), callback.getErrorMessage(),
+                LocalDateTime.now()));
+        ackLatency.record((System.nanoTime() - start) / 1_000_000);
+
+        if (inserted == null || inserted == 0) {
+            duplicates.incrementAndGet();
+            log.info("Duplicate payment callback ignored [key={}]", dedupKey);
+            return false;
+        }
+        received.incrementAndGet();
+        workers.execute(this::drain); // don't wait for the next poll
+        return true;
+    }
+
+    static String dedupKey(PaymentCallback callback) {
+        if (callback.getRazorpayPaymentId() != null && !callback.getRazorpayPaymentId().isBlank()) {
+            return callback.getRazorpayPaymentId();
+        }
+        if (callback.getRazorpayOrderId() == null || callback.getRazorpayOrderId().isBlank()) {
+            throw new RuntimeException("Callback carries neither a payment id nor an order id.");
+        }
+        return "order:" + callback.getRazorpayOrderId() + ":" + callback.getStatus();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Workers
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void drain() {
+        try {
+            while (true) {
+                LocalDateTime now = LocalDateTime.now();
+                List<Long> ids = transactionTemplate.execute(status ->
+                        callbackEventRepository.claimBatch(batchSize, now, now.minus(STALE_CLAIM)));
+                if (ids == null || ids.isEmpty()) {
+                    return;
+                }
+                for (Long id : ids) {
+                    process(id);
+                }
+            }
+        } catch (Exception e) {
+            // Never let an exception escape: it would cancel this worker's schedule
+            log.error("❌ Payment callback worker error: {}", e.getMessage(), e);
+        }
+    }
+
+    private void process(Long eventId) {
+        try {
+            PaymentCallbackEvent processed = transactionTemplate.execute(status -> {
+                PaymentCallbackEvent event = callbackEventRepository.findById(eventId).orElseThrow();
+                PaymentService.CallbackOutcome outcome = paymentService.handlePaymentGatewayCallback(
+                        event.getGatewayPaymentId(), event.getGatewayOrderId(),
+                        event.getSignature(), event.getGatewayStatus(), event.getErrorMessage());
+                event.setAttempts(event.getAttempts() + 1);
+                event.setState(outcome.state());
+                event.setProcessedAt(LocalDateTime.now());
+                event.setLastError(outcome.note());
+                return callbackEventRepository.save(event);
+            });
+            switch (processed.getState()) {
+                case "PARKED" -> parked.incrementAndGet();
+                case "IGNORED" -> ignored.incrementAndGet();
+                default -> applied.incrementAndGet();
+            }
+            applyLatency.record(Duration.between(processed.getReceivedAt(), LocalDateTime.now()).toMillis());
+        } catch (Exception e) {
+            transactionTemplate.executeWithoutResult(status -> {
+                PaymentCallbackEvent event = callbackEventRepository.findById(eventId).orElseThrow();
+                event.setAttempts(event.getAttempts() + 1);
+                event.setLastError(e.getMessage());
+                if (event.getAttempts() >= maxAttempts) {
+                    event.setState("FAILED");
+                    event.setProcessedAt(LocalDateTime.now());
+                    failed.incrementAndGet();
+                    log.error("❌ Payment callback {} failed permanently after {} attempts: {}",
+                            event.getDedupKey(), event.getAttempts(), e.getMessage());
+                } else {
+                    Duration backoff = retryBackoff(event.getAttempts());
+                    event.setState("QUEUED");
+                    event.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+                    retried.incrementAndGet();
+                    log.warn("Payment callback {} attempt {} failed, retrying in {} ms: {}",
+                            event.getDedupKey(), event.getAttempts(), backoff.toMillis(), e.getMessage());
+                }
+                callbackEventRepository.save(event);
+            });
+        }
+    }
+
+    /** Delay before retry number {@code attempts}: base, 2×base, 4×base, … capped at the max backoff. */
+    Duration retryBackoff(int attempts) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 20);
+        return Duration.ofMillis(Math.min(retryBackoffMillis << doublings, retryMaxBackoffMillis));
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Metrics
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Queue depth, counters since startup and latency percentiles (ms) over the
+     * most recent callbacks: ack = webhook insert, apply = received → applied.
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", callbackEventRepository.countByState("QUEUED"));
+        metrics.put("inFlight", callbackEventRepository.countByState("PROCESSING"));
+        metrics.put("received", received.get());
+        metrics.put("duplicates", duplicates.get());
+        metrics.put("applied", applied.get());
+        metrics.put("ignored", ignored.get());
+        metrics.put("parked", parked.get());
+        metrics.put("parkedTotal", callbackEventRepository.countByState("PARKED"));
+        metrics.put("retried", retried.get());
+        metrics.put("failed", failed.get());
+        metrics.put("ackLatencyMs", ackLatency.snapshot());
+        metrics.put("applyLatencyMs", applyLatency.snapshot());
+        return metrics;
+    }
+
+    /** Fixed-size ring of the most recent latency samples. */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("samples", size);
+            stats.put("avg", size == 0 ? 0 : Arrays.stream(sorted).sum() / size);
+            stats.put("p50", percentile(sorted, 0.50));
+            stats.put("p95", percentile(sorted, 0.95));
+            stats.put("max", size == 0 ? 0 : sorted[size - 1]);
+            return stats;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(p * sorted.length) - 1];
+        }
+    }
+}
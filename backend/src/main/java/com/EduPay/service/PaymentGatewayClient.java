@@ -0,0 +1,28 @@
+package com.EduPay.service;
+
+/**
+ * Outbound calls to the payment gateway. A real gateway (e.g. Razorpay) plugs in
+ * as a bean; FakePaymentGateway stands in for it in the local / test profiles only.
+ */
+public interface PaymentGatewayClient {
+
+    /** Order as acknowledged by the gateway. */
+    record GatewayOrder(String orderId, Double amount, String currency, String status) {}
+
+    /**
+     * Creates an order for the amount.
+     *
+     * @param receipt our own reference for the order (shown on gateway dashboards)
+     */
+    GatewayOrder createOrder(Double amount, String currency, String receipt);
+
+    /** Gateway-side state of an order: "created" (unpaid), "paid" or "failed"; paymentId is set once paid. */
+    record GatewayOrderStatus(String orderId, String status, String paymentId) {}
+
+    /**
+     * Fetches the current state of an order (used by reconciliation when a callback never arrived).
+     *
+     * @throws RuntimeException if the gateway does not know the order or cannot be reached
+     */
+    GatewayOrderStatus fetchOrderStatus(String orderId);
+}
@@ -0,0 +1,282 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.PaymentCallback;
+import com.EduPay.model.PaymentOrder;
+import com.EduPay.repository.PaymentOrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Settles payment orders whose gateway callback never arrived.
+ *
+ * Orders still CREATED after the stale threshold are scanned in keyset batches
+ * (payment_orders.id). Each batch is checked against the gateway on virtual
+ * threads, at most max-concurrent-gateway-calls at a time, and then settled:
+ *   - paid    → a synthetic success callback is put on the callback queue, so the
+ *               money goes through the same idempotent path as a real webhook
+ *               (a late real callback with the same payment id is dropped as a duplicate)
+ *   - failed  → the batch's failed orders are marked FAILED in one UPDATE
+ *   - created → left alone until the expiry age, then marked EXPIRED in one UPDATE
+ *   - lookup failed → counted on the order (reconcile_failures, last_reconcile_error);
+ *               once past the expiry age the order is EXPIRED anyway and listed
+ *               in the report under expiredUnverifiedOrders, so an order the
+ *               gateway never answers for does not stay pending unnoticed
+ *
+ * FAILED and EXPIRED are not final: a success callback (real or synthetic) that
+ * arrives later still settles the order as PAID and applies the payment — see
+ * PaymentService.handlePaymentGatewayCallback and PaymentOrderRepository.settlePaid.
+ *
+ * Every run produces a report { scanned, paid, failed, expired, stillPending,
+ * errors, expiredUnverified, expiredUnverifiedOrders, batches, gatewayCallMs,
+ * elapsedMs, ordersPerSecond }; the last one is kept for the admin API.
+ */
+@Service
+public class PaymentReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentReconciliationService.class);
+
+    private static final int MAX_REPORTED_ORDERS = 100;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final PaymentGatewayClient paymentGatewayClient;
+    private final PaymentCallbackProcessor paymentCallbackProcessor;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicReference<Map<String, Object>> lastReport = new AtomicReference<>();
+
+    @Value("${edupay.payments.reconcile-batch-size:500}")
+    private int batchSize;
+
+    @Value("${edupay.payments.reconcile-stale-minutes:15}")
+    private long staleMinutes;
+
+    @Value("${edupay.payments.order-expiry-minutes:1440}")
+    private long expiryMinutes;
+
+    @Value("${edupay.payments.reconcile-max-concurrent-gateway-calls:16}")
+    private int maxConcurrentGatewayCalls;
+
+    public PaymentReconciliationService(PaymentOrderRepository paymentOrderRepository,
+                                        PaymentGatewayClient paymentGatewayClient,
+                                        PaymentCallbackProcessor paymentCallbackProcessor,
+                                        PlatformTransactionManager transactionManager) {
+        this.paymentOrderRepository = paymentOrderRepository;
+        this.paymentGatewayClient = paymentGatewayClient;
+        this.paymentCallbackProcessor = paymentCallbackProcessor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Scheduled run; the interval is set in application.yml.
+     */
+    @Scheduled(fixedDelayString = "${edupay.payments.reconcile-interval-ms:300000}",
+               initialDelayString = "${edupay.payments.reconcile-interval-ms:300000}")
+    public void scheduledReconciliation() {
+        reconcile();
+    }
+
+    /**
+     * Runs one reconciliation pass now (admin trigger). A pass already in
+     * progress is not started twice; its caller gets { "status": "already-running" }.
+     */
+    public Map<String, Object> reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return Map.of("status", "already-running");
+        }
+        try {
+            Map<String, Object> report = runReconciliation();
+            lastReport.set(report);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /** Report of the most recent pass, or an empty map if none has run yet. */
+    public Map<String, Object> getLastReport() {
+        Map<String, Object> report = lastReport.get();
+        return report != null ? report : Map.of();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Reconciliation pass
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private Map<String, Object> runReconciliation() {
+        long startNanos = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusMinutes(staleMinutes);
+        LocalDateTime expireBefore = now.minusMinutes(expiryMinutes);
+
+        int scanned = 0;
+        int batches = 0;
+        int paid = 0;
+        int failed = 0;
+        int expired = 0;
+        int stillPending = 0;
+        int expiredUnverified = 0;
+        List<Map<String, Object>> expiredUnverifiedOrders = new ArrayList<>();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong gatewayNanos = new AtomicLong();
+        Semaphore gatewayPermits = new Semaphore(maxConcurrentGatewayCalls);
+
+        long afterId = 0L;
+        while (true) {
+            List<PaymentOrder> batch = paymentOrderRepository.findByStatusAndCreatedAtBeforeAndIdGreaterThanOrderByIdAsc(
+                    "CREATED", staleBefore, afterId, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            batches++;
+            scanned += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+
+            // 1. Ask the gateway about every order in the batch, bounded by the permit count
+            ConcurrentLinkedQueue<Resolved> resolved = new ConcurrentLinkedQueue<>();
+            ConcurrentLinkedQueue<Unresolved> unresolved = new ConcurrentLinkedQueue<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (PaymentOrder order : batch) {
+                    executor.submit(() -> {
+                        try {
+                            gatewayPermits.acquire();
+                            long callStart = System.nanoTime();
+                            try {
+                                resolved.add(new Resolved(order,
+                                        paymentGatewayClient.fetchOrderStatus(order.getGatewayOrderId())));
+                            } finally {
+                                gatewayNanos.addAndGet(System.nanoTime() - callStart);
+                                gatewayPermits.release();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            errors.incrementAndGet();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            unresolved.add(new Unresolved(order, String.valueOf(e.getMessage())));
+                            log.warn("Reconciliation: status fetch failed for order {}: {}",
+                                    order.getGatewayOrderId(), e.getMessage());
+                        }
+                    });
+                }
+            } // close() waits for every status fetch in the batch
+
+            // 2. Apply the batch's transitions
+            List<Long> failedIds = new ArrayList<>();
+            List<Long> expiredIds = new ArrayList<>();
+            for (Resolved r : resolved) {
+                switch (r.status().status()) {
+                    case "paid" -> {
+                        try {
+                            paymentCallbackProcessor.ingest(new PaymentCallback(r.status().paymentId(),
+                                    r.order().getGatewayOrderId(), null, "success", null));
+                            paid++;
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            log.warn("Reconciliation: could not queue paid order {}: {}",
+                                    r.order().getGatewayOrderId(), e.getMessage());
+                        }
+                    }
+                    case "failed" -> failedIds.add(r.order().getId());
+                    default -> {
+                        if (r.order().getCreatedAt().isBefore(expireBefore)) {
+                            expiredIds.add(r.order().getId());
+                        } else {
+                            stillPending++;
+                        }
+                    }
+                }
+            }
+            failed += settleAll(failedIds, "FAILED", now);
+            expired += settleAll(expiredIds, "EXPIRED", now);
+
+            // 3. Record failed lookups; past the expiry age, expire and report the order anyway
+            List<Long> unverifiedIds = new ArrayList<>();
+            for (Unresolved u : unresolved) {
+                recordFailure(u);
+                if (u.order().getCreatedAt().isBefore(expireBefore)) {
+                    unverifiedIds.add(u.order().getId());
+                    if (expiredUnverifiedOrders.size() < MAX_REPORTED_ORDERS) {
+                        Map<String, Object> entry = new LinkedHashMap<>();
+                        entry.put("orderId", u.order().getGatewayOrderId());
+                        entry.put("lookupFailures",
+                                (u.order().getReconcileFailures() != null ? u.order().getReconcileFailures() : 0) + 1);
+                        entry.put("lastError", u.error());
+                        expiredUnverifiedOrders.add(entry);
+                    }
+                    log.warn("Reconciliation: order {} expired without a gateway status (last error: {})",
+                            u.order().getGatewayOrderId(), u.error());
+                }
+            }
+            expiredUnverified += settleAll(unverifiedIds, "EXPIRED", now);
+
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", now);
+        report.put("scanned", scanned);
+        report.put("paid", paid);
+        report.put("failed", failed);
+        report.put("expired", expired);
+        report.put("stillPending", stillPending);
+        report.put("errors", errors.get());
+        report.put("expiredUnverified", expiredUnverified);
+        report.put("expiredUnverifiedOrders", expiredUnverifiedOrders);
+        report.put("batches", batches);
+        report.put("gatewayCallMs", gatewayNanos.get() / 1_000_000);
+        report.put("elapsedMs", elapsedMs);
+        report.put("ordersPerSecond", elapsedMs > 0 ? scanned * 1000L / elapsedMs : scanned);
+        if (scanned > 0) {
+            log.info("💳 Payment reconciliation finished: {}", report);
+        }
+        return report;
+    }
+
+    private int settleAll(List<Long> ids, String status, LocalDateTime completedAt) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Integer updated = transactionTemplate.execute(tx -> paymentOrderRepository.settleAll(ids, status, completedAt));
+        return updated != null ? updated : 0;
+    }
+
+    private void recordFailure(Unresolved u) {
+        String error = u.error().length() > MAX_ERROR_LENGTH ? u.error().substring(0, MAX_ERROR_LENGTH) : u.error();
+        try {
+            transactionTemplate.executeWithoutResult(tx ->
+                    paymentOrderRepository.recordReconcileFailure(u.order().getId(), error));
+        } catch (Exception e) {
+            log.warn("Reconciliation: could not record lookup failure for order {}: {}",
+                    u.order().getGatewayOrderId(), e.getMessage());
+        }
+    }
+
+    private record Resolved(PaymentOrder order, PaymentGatewayClient.GatewayOrderStatus status) {}
+
+    private record Unresolved(PaymentOrder order, String error) {}
+}
@@ -1,22 +1,24 @@
 package com.EduPay.service;
 
 import com.EduPay.dto.PaymentHistoryDto;
+import com.EduPay.exception.PaymentRejectedException;
 import com.EduPay.model.Fee;
 import com.EduPay.model.Payment;
+import com.EduPay.model.PaymentOrder;
 import com.EduPay.model.Student;
-import com.EduPay.model.User;
 import com.EduPay.repository.FeeRepository;
+import com.EduPay.repository.PaymentOrderRepository;
 import com.EduPay.repository.PaymentRepository;
 import com.EduPay.repository.StudentRepository;
-import com.EduPay.repository.UserRepository;
-import com.EduPay.config.CustomUserDetails; // Corrected import: Import CustomUserDetails from config package
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -29,149 +31,202 @@ import java.util.stream.Collectors;
 @Service
 public class PaymentService {
 
+    private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
+
     private final PaymentRepository paymentRepository;
     private final StudentRepository studentRepository;
     private final FeeRepository feeRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final FeePaymentService feePaymentService;
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final PaymentGatewayClient paymentGatewayClient;
 
     public PaymentService(PaymentRepository paymentRepository, StudentRepository studentRepository,
-                          FeeRepository feeRepository, UserRepository userRepository) {
+                          FeeRepository feeRepository, CurrentUserResolver currentUserResolver,
+                          FeePaymentService feePaymentService,
+                          PaymentOrderRepository paymentOrderRepository,
+                          PaymentGatewayClient paymentGatewayClient) {
         this.paymentRepository = paymentRepository;
         this.studentRepository = studentRepository;
         this.feeRepository = feeRepository;
-        this.userRepository = userRepository;
-    }
-
-    // Helper method to get the current authenticated user's ID from Spring Security Context
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
-            throw new RuntimeException("User is not authenticated.");
-        }
-        // Corrected: Cast the principal to CustomUserDetails, not CustomUserDetailsService
-        if (authentication.getPrincipal() instanceof CustomUserDetails) {
-            return ((CustomUserDetails) authentication.getPrincipal()).getId();
-        } else {
-            throw new RuntimeException("Authenticated principal is not of type CustomUserDetails.");
-        }
+        this.currentUserResolver = currentUserResolver;
+        this.feePaymentService = feePaymentService;
+        this.paymentOrderRepository = paymentOrderRepository;
+        this.paymentGatewayClient = paymentGatewayClient;
     }
 
     /**
-     * Simulates creating an order with a payment gateway (e.g., Razorpay).
-     * In a real application, this would involve calling the Razorpay API.
+     * Creates a payment order with the gateway for one fee and persists it as CREATED.
+     * The stored order carries the student, fee and amount, so the callback can
+     * apply the payment with one indexed lookup by gateway order id.
      *
      * @param studentId The ID of the student initiating the payment.
-     * @param feeId Optional ID of the fee being paid.
-     * @param amount The amount to be paid.
+     * @param feeId ID of the fee being paid.
+     * @param amount The amount to be paid; defaults to the fee's outstanding amount.
      * @param currency The currency (e.g., "INR").
      * @param description A description for the payment.
-     * @return A mock object representing the payment gateway's order response.
-     * @throws RuntimeException if student or fee is not found.
+     * @return The order details: orderId, amount, currency, status, feeId.
+     * @throws RuntimeException if student or fee is not found, or the amount is invalid.
      */
     @Transactional
-    public Object createPaymentOrder(Long studentId, Long feeId, Double amount, String currency, String description) {
-        Student student = studentRepository.findById(studentId)
-                .orElseThrow(() -> new RuntimeException("Student not found with ID: " + studentId));
-
-        // Optional: Validate fee if feeId is provided
-        if (feeId != null) {
-            Fee fee = feeRepository.findById(feeId)
-                    .orElseThrow(() -> new RuntimeException("Fee not found with ID: " + feeId));
-            if (!fee.getStudent().getId().equals(studentId)) {
-                throw new RuntimeException("Fee does not belong to the specified student.");
-            }
-            // Further validation: check if amount matches outstanding, etc.
+    public Map<String, Object> createPaymentOrder(Long studentId, Long feeId, Double amount, String currency, String description) {
+        if (!studentRepository.existsById(studentId)) {
+            throw new RuntimeException("Student not found with ID: " + studentId);
+        }
+        if (feeId == null) {
+            throw new RuntimeException("feeId is required to create a payment order.");
+        }
+        Fee fee = feeRepository.findById(feeId)
+                .orElseThrow(() -> new RuntimeException("Fee not found with ID: " + feeId));
+        if (!fee.getStudent().getId().equals(studentId)) {
+            throw new RuntimeException("Fee does not belong to the specified student.");
+        }
+
+        double orderAmount = amount != null ? amount : fee.getOutstandingAmount();
+        if (orderAmount <= 0) {
+            throw new RuntimeException("Payment amount must be positive.");
+        }
+        if (orderAmount > fee.getOutstandingAmount()) {
+            throw new RuntimeException("Payment amount exceeds outstanding amount for this fee.");
         }
+        String orderCurrency = currency != null ? currency : "INR";
+
+        PaymentGatewayClient.GatewayOrder gatewayOrder =
+                paymentGatewayClient.createOrder(orderAmount, orderCurrency, "fee_" + feeId);
 
-        // --- Simulate Payment Gateway Order Creation ---
-        // In a real scenario, integrate with Razorpay SDK/API here.
-        // Example: RazorpayClient client = new RazorpayClient(keyId, keySecret);
-        // JSONObject orderRequest = new JSONObject();
-        // orderRequest.put("amount", amount * 100); // Razorpay expects amount in paisa
-        // orderRequest.put("currency", currency);
-        // orderRequest.put("receipt", "receipt_id_" + System.currentTimeMillis());
-        // Order order = client.orders.create(orderRequest);
-        // return order.toMap(); // Return the order details from Razorpay
-
-        // For now, return a mock response
-        String mockOrderId = "order_" + System.currentTimeMillis();
-        System.out.println("Simulating payment order creation for student " + studentId + " with amount " + amount);
-        return new Object() {
-            public String orderId = mockOrderId;
-            public Double amount = 100.0; // Use the actual amount passed
-            public String currency = "INR";
-            public String status = "created";
-        };
+        PaymentOrder order = new PaymentOrder();
+        order.setGatewayOrderId(gatewayOrder.orderId());
+        order.setStudentPk(studentId);
+        order.setFeeId(feeId);
+        order.setAmount(orderAmount);
+        order.setCurrency(orderCurrency);
+        order.setDescription(description);
+        order.setStatus("CREATED");
+        order.setCreatedAt(LocalDateTime.now());
+        paymentOrderRepository.save(order);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("orderId", order.getGatewayOrderId());
+        response.put("amount", order.getAmount());
+        response.put("currency", order.getCurrency());
+        response.put("status", "created");
+        response.put("feeId", feeId);
+        return response;
     }
 
 
+    /**
+     * Outcome of one gateway callback, recorded on its queued event:
+     * APPLIED (order settled), IGNORED (nothing to do, e.g. a failure for an
+     * order already paid) or PARKED (money taken at the gateway that could not
+     * be credited — needs a refund or manual allocation; {@code note} says why).
+     */
+    public record CallbackOutcome(String state, String note) {
+        static CallbackOutcome applied() {
+            return new CallbackOutcome("APPLIED", null);
+        }
+
+        static CallbackOutcome ignored(String note) {
+            return new CallbackOutcome("IGNORED", note);
+        }
+
+        static CallbackOutcome parked(String note) {
+            return new CallbackOutcome("PARKED", note);
+        }
+    }
+
     /**
      * Handles the callback from the payment gateway (e.g., Razorpay webhook).
-     * Verifies the payment and updates the database.
+     * Resolves the order by gateway order id and applies the payment to the
+     * order's fee and the student's balance.
+     *
+     * Only PAID is final: a success is applied even when the order was already
+     * marked FAILED (retried on the same order) or EXPIRED by reconciliation.
+     * A success that can't be credited — a second payment on a paid order, or
+     * one the fee rejects — is recorded as an "Unapplied" payment and PARKED,
+     * never dropped.
      *
      * @param razorpayPaymentId The payment ID from the gateway.
      * @param razorpayOrderId The order ID from the gateway.
      * @param razorpaySignature The signature for verification.
      * @param status The status of the payment (e.g., "success", "failed").
      * @param errorMessage Any error message from the gateway.
-     * @throws RuntimeException if verification fails or payment update encounters an issue.
+     * @return what happened to the callback
+     * @throws RuntimeException if the order is unknown or the payment update hits a (retryable) error.
      */
     @Transactional
-    public void handlePaymentGatewayCallback(String razorpayPaymentId, String razorpayOrderId,
-                                             String razorpaySignature, String status, String errorMessage) {
+    public CallbackOutcome handlePaymentGatewayCallback(String razorpayPaymentId, String razorpayOrderId,
+                                                        String razorpaySignature, String status, String errorMessage) {
         // --- Simulate Signature Verification ---
         // In a real scenario, verify the signature using Razorpay's utility.
         // Example: Utils.verifyPaymentSignature(attributes, razorpaySignature, razorpayKeySecret);
         // if (!verified) { throw new RuntimeException("Payment signature verification failed."); }
 
-        System.out.println("Processing payment callback for order: " + razorpayOrderId + ", payment: " + razorpayPaymentId);
-
-        // Find the corresponding payment record (if already created as 'pending' or similar)
-        Optional<Payment> existingPaymentOpt = paymentRepository.findByGatewayOrderId(razorpayOrderId);
-        Payment payment;
+        PaymentOrder order = paymentOrderRepository.findByGatewayOrderId(razorpayOrderId)
+                .orElseThrow(() -> new RuntimeException("Unknown payment order: " + razorpayOrderId));
+        LocalDateTime now = LocalDateTime.now();
 
-        if (existingPaymentOpt.isPresent()) {
-            payment = existingPaymentOpt.get();
-        } else {
-            // This might happen if the payment record is created only after successful callback.
-            // In a robust system, you'd likely have a 'pending' payment record created with the order.
-            // For this example, we'll assume a mock student and amount if not found.
-            payment = new Payment();
-            payment.setTransactionId(razorpayPaymentId);
-            Student mockStudent = studentRepository.findById(1L) // Placeholder student
-                    .orElseThrow(() -> new RuntimeException("Mock student not found for payment callback."));
-            payment.setStudent(mockStudent);
-            payment.setAmount(100.0); // Placeholder amount, should come from order details or pre-created payment
-            payment.setPaymentMethod("Online");
-            payment.setPaymentDate(LocalDateTime.now());
+        if (!"success".equalsIgnoreCase(status)) {
+            if (paymentOrderRepository.settleFailed(order.getId(), razorpayPaymentId, now) == 0) {
+                String note = "Failure callback ignored: order " + razorpayOrderId
+                        + " is already " + currentSettlement(order.getId())[0];
+                log.info(note);
+                return CallbackOutcome.ignored(note);
+            }
+            log.warn("Payment failed for order {}: {}", razorpayOrderId, errorMessage);
+            savePayment(order, razorpayPaymentId, razorpayOrderId, "Failed");
+            return CallbackOutcome.applied();
         }
 
-        payment.setGatewayPaymentId(razorpayPaymentId);
-        payment.setGatewayOrderId(razorpayOrderId);
-        payment.setStatus(status.equalsIgnoreCase("success") ? "Success" : "Failed");
-
-        // Update fee status if payment is successful and linked to a fee
-        if (status.equalsIgnoreCase("success")) {
-            // Find the fee associated with this payment/order and update its status
-            // This logic depends on how you link orders to fees.
-            // For example, if your PaymentRequest includes feeId, you'd store it in the Payment entity
-            // and then retrieve the Fee here.
-            Optional<Fee> feeOpt = feeRepository.findByStudentIdAndStatus(payment.getStudent().getId(), "Pending"); // Simplified
-            if (feeOpt.isPresent()) {
-                Fee fee = feeOpt.get();
-                fee.setAmountPaid(fee.getAmountPaid() + payment.getAmount());
-                fee.setOutstandingAmount(fee.getOutstandingAmount() - payment.getAmount());
-                if (fee.getOutstandingAmount() <= 0) {
-                    fee.setStatus("Paid");
-                } else {
-                    fee.setStatus("Partially Paid");
-                }
-                feeRepository.save(fee);
+        if (paymentOrderRepository.settlePaid(order.getId(), razorpayPaymentId, now) == 0) {
+            // Already PAID (possibly by a concurrent callback that just committed)
+            Object[] settlement = currentSettlement(order.getId());
+            if (razorpayPaymentId == null || razorpayPaymentId.equals(settlement[1])) {
+                String note = "Duplicate success callback ignored for paid order " + razorpayOrderId;
+                log.info(note);
+                return CallbackOutcome.ignored(note);
             }
-        } else {
-            System.err.println("Payment failed for order " + razorpayOrderId + ": " + errorMessage);
+            return park(order, razorpayPaymentId, razorpayOrderId,
+                    "order already paid by " + settlement[1] + "; second payment needs a refund");
         }
 
+        if (!"CREATED".equals(order.getStatus())) {
+            log.warn("Late success for {} order {} — applying payment {}",
+                    order.getStatus(), razorpayOrderId, razorpayPaymentId);
+        }
+        try {
+            // Atomic increment; runs in the callback worker's transaction, whose queue retries on failure
+            feePaymentService.applyPayment(order.getStudentPk(), order.getFeeId(), order.getAmount());
+        } catch (PaymentRejectedException e) {
+            // Nothing was written by the rejected update; the order stays PAID — the gateway has the money
+            return park(order, razorpayPaymentId, razorpayOrderId,
+                    e.getMessage() + " Needs a refund or manual allocation.");
+        }
+        savePayment(order, razorpayPaymentId, razorpayOrderId, "Success");
+        return CallbackOutcome.applied();
+    }
+
+    private CallbackOutcome park(PaymentOrder order, String razorpayPaymentId, String razorpayOrderId, String reason) {
+        String note = "Payment " + razorpayPaymentId + " for order " + razorpayOrderId + " not applied: " + reason;
+        log.error("❌ {}", note);
+        savePayment(order, razorpayPaymentId, razorpayOrderId, "Unapplied");
+        return CallbackOutcome.parked(note);
+    }
+
+    private Object[] currentSettlement(Long orderId) {
+        return paymentOrderRepository.findSettlement(orderId).get(0);
+    }
+
+    private void savePayment(PaymentOrder order, String razorpayPaymentId, String razorpayOrderId, String status) {
+        Payment payment = new Payment();
+        payment.setTransactionId(razorpayPaymentId != null ? razorpayPaymentId : razorpayOrderId);
+        payment.setStudent(studentRepository.getReferenceById(order.getStudentPk()));
+        payment.setAmount(order.getAmount());
+        payment.setPaymentMethod("Online");
+        payment.setPaymentDate(LocalDateTime.now());
+        payment.setGatewayPaymentId(razorpayPaymentId);
+        payment.setGatewayOrderId(razorpayOrderId);
+        payment.setStatus(status);
         paymentRepository.save(payment);
     }
 
@@ -204,18 +259,7 @@ public class PaymentService {
      * @throws RuntimeException if the student's user account is not linked to a student profile.
      */
     public List<PaymentHistoryDto> getPaymentHistoryForCurrentStudent() {
-        // Get current user's ID from Spring Security context
-        Long currentUserId = getCurrentUserId(); // Correctly fetches ID from CustomUserDetails
-
-        // Find the User entity for the current authenticated user
-        User studentUser = userRepository.findById(currentUserId)
-                .orElseThrow(() -> new RuntimeException("Student user not found with ID: " + currentUserId));
-
-        // Assuming student's username (name) is used to find the corresponding Student entity
-        // Note: The StudentRepository.findByName method is needed for this to work.
-        // If not already present, you'll need to add: Optional<Student> findByName(String name); to StudentRepository.java
-        Student student = studentRepository.findByName(studentUser.getUsername())
-                .orElseThrow(() -> new RuntimeException("Student profile not found for user: " + studentUser.getUsername()));
+        Student student = currentUserResolver.requireStudent();
 
         List<Payment> payments = paymentRepository.findByStudentId(student.getId());
         return payments.stream()
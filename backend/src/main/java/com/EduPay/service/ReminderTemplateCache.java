@@ -0,0 +1,141 @@
+package com.EduPay.service;
+
+import com.EduPay.model.Fee;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of AI-drafted reminder templates, keyed by a normalized fee profile:
+ *   sorted fee types, outstanding amount band, days-to-due band
+ *
+ * Students sharing a profile get the same template with their own name, class,
+ * amount and due date substituted into the slots, so the LLM is called once per
+ * bucket instead of once per student. Concurrent lookups for the same bucket
+ * wait on the first caller's LLM call rather than issuing their own.
+ */
+@Component
+public class ReminderTemplateCache {
+
+    public static final String SLOT_NAME = "{studentName}";
+    public static final String SLOT_CLASS = "{standard}";
+    public static final String SLOT_AMOUNT = "{totalOutstanding}";
+    public static final String SLOT_DUE_DATE = "{earliestDueDate}";
+    public static final String SLOT_FEE_COUNT = "{pendingFeeCount}";
+
+    /** A reminder + insight pair containing slot placeholders. */
+    public record ReminderTemplate(String reminder, String insight, boolean aiDrafted) {}
+
+    /**
+     * The fee profile a template is drafted for; also the cache key (record
+     * equality, so fee type names may contain any character).
+     */
+    public record FeeProfile(List<String> feeTypes, String amountBand, String dueBand) {
+
+        public FeeProfile {
+            feeTypes = List.copyOf(feeTypes);
+        }
+
+        /** Readable form for logs, e.g. "Exam Fee,Tuition Fee|5K-20K|DUE_8_30D". */
+        @Override
+        public String toString() {
+            return String.join(",", feeTypes) + "|" + amountBand + "|" + dueBand;
+        }
+    }
+
+    private final ConcurrentHashMap<FeeProfile, CompletableFuture<ReminderTemplate>> templates = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Fee profile (bucket) for a student's pending fees.
+     */
+    public static FeeProfile profile(List<Fee> pendingFees, LocalDate today) {
+        List<String> feeTypes = pendingFees.stream()
+                .map(Fee::getFeeType)
+                .distinct()
+                .sorted()
+                .toList();
+        double total = pendingFees.stream().mapToDouble(Fee::getOutstandingAmount).sum();
+        LocalDate earliestDue = pendingFees.stream()
+                .map(Fee::getDueDate)
+                .min(LocalDate::compareTo)
+                .orElse(today);
+        return new FeeProfile(feeTypes, amountBand(total), dueBand(ChronoUnit.DAYS.between(today, earliestDue)));
+    }
+
+    static String amountBand(double amount) {
+        if (amount < 1_000)  return "LT_1K";
+        if (amount < 5_000)  return "1K-5K";
+        if (amount < 20_000) return "5K-20K";
+        return "GTE_20K";
+    }
+
+    static String dueBand(long daysToDue) {
+        if (daysToDue < 0)   return "OVERDUE";
+        if (daysToDue <= 7)  return "DUE_0_7D";
+        if (daysToDue <= 30) return "DUE_8_30D";
+        return "DUE_30D_PLUS";
+    }
+
+    /**
+     * Returns the cached template for the bucket, calling the loader only on the first miss.
+     */
+    public ReminderTemplate get(FeeProfile profile, Supplier<ReminderTemplate> loader) {
+        CompletableFuture<ReminderTemplate> mine = new CompletableFuture<>();
+        CompletableFuture<ReminderTemplate> existing = templates.putIfAbsent(profile, mine);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing.join();
+        }
+
+        misses.incrementAndGet();
+        try {
+            mine.complete(loader.get());
+        } catch (RuntimeException e) {
+            templates.remove(profile, mine); // let the next student retry this bucket
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        return mine.join();
+    }
+
+    /**
+     * Fills a template's slots for one student.
+     */
+    public static String fill(String template, String studentName, String standard,
+                              double totalOutstanding, LocalDate earliestDue, int pendingFeeCount) {
+        return template
+                .replace(SLOT_NAME, studentName)
+                .replace(SLOT_CLASS, standard)
+                .replace(SLOT_AMOUNT, String.format("%.2f", totalOutstanding))
+                .replace(SLOT_DUE_DATE, earliestDue.toString())
+                .replace(SLOT_FEE_COUNT, String.valueOf(pendingFeeCount));
+    }
+
+    /** Drops all templates; due-date bands are relative to today, so each run starts fresh. */
+    public void clear() {
+        templates.clear();
+    }
+
+    /** Cumulative cache metrics since startup. */
+    public Map<String, Object> stats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("buckets", templates.size());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", h + m > 0 ? Math.round(h * 10000.0 / (h + m)) / 10000.0 : 0.0);
+        stats.put("llmCallsAvoided", h);
+        return stats;
+    }
+}
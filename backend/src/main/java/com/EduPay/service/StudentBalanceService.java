@@ -0,0 +1,93 @@
+package com.EduPay.service;
+
+import com.EduPay.model.StudentBalance;
+import com.EduPay.repository.StudentBalanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read side of the per-student balance projection (student_balances).
+ *
+ * Fee assignment, late charges and payments update the projection in their
+ * own transactions (see StudentBalanceRepository and FeeRepository.applyLateCharge);
+ * readers get billed / paid / outstanding / earliest due with one
+ * primary-key lookup instead of loading and summing every Fee row.
+ */
+@Service
+public class StudentBalanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentBalanceService.class);
+
+    private final StudentBalanceRepository studentBalanceRepository;
+
+    public StudentBalanceService(StudentBalanceRepository studentBalanceRepository) {
+        this.studentBalanceRepository = studentBalanceRepository;
+    }
+
+    /** Builds the projection on first start against an existing fees table. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional // rebuild() is a self-call here, so its own @Transactional doesn't apply
+    public void initialize() {
+        if (studentBalanceRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    /** Balance for one student (students.id); zero when the student has no fees. */
+    public StudentBalance getBalance(Long studentPk) {
+        return studentBalanceRepository.findById(studentPk)
+                .orElseGet(() -> StudentBalance.empty(studentPk));
+    }
+
+    /** Balances for many students in one query, keyed by students.id (students without fees are absent). */
+    public Map<Long, StudentBalance> getBalances(Collection<Long> studentPks) {
+        return studentBalanceRepository.findAllById(studentPks).stream()
+                .collect(Collectors.toMap(StudentBalance::getStudentPk, Function.identity()));
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Writes — must run inside the transaction that changes the fees
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @Transactional
+    public void onFeeAdded(Long studentPk, Double amount, LocalDate dueDate) {
+        studentBalanceRepository.addFee(studentPk, amount, dueDate);
+    }
+
+    @Transactional
+    public void onFeeAssignedToChunk(Double amount, LocalDate dueDate, String standard, Long afterId, Long upToId) {
+        studentBalanceRepository.addFeeForChunk(amount, dueDate, standard, afterId, upToId);
+    }
+
+    @Transactional
+    public void onPayment(Long studentPk, Double amount) {
+        studentBalanceRepository.applyPayment(studentPk, amount);
+    }
+
+    @Transactional
+    public void onStudentDeleted(Long studentPk) {
+        studentBalanceRepository.deleteById(studentPk);
+    }
+
+    /**
+     * Recomputes every balance from the fees table.
+     */
+    @Transactional
+    public int rebuild() {
+        long start = System.nanoTime();
+        int students = studentBalanceRepository.rebuildAll();
+        log.info("💰 Student balances rebuilt for {} students in {} ms",
+                students, (System.nanoTime() - start) / 1_000_000);
+        return students;
+    }
+}
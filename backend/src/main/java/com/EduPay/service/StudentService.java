@@ -3,17 +3,21 @@ package com.EduPay.service;
 import com.EduPay.dto.AnnouncementDto;
 import com.EduPay.dto.FeeDto;
 import com.EduPay.dto.PaymentHistoryDto;
+import com.EduPay.dto.StudentDto;
 import com.EduPay.model.Announcement;
 import com.EduPay.model.Fee;
 import com.EduPay.model.Payment;
 import com.EduPay.model.Student;
-import com.EduPay.model.User;
 import com.EduPay.repository.AnnouncementRepository;
 import com.EduPay.repository.FeeRepository;
 import com.EduPay.repository.PaymentRepository;
 import com.EduPay.repository.StudentRepository;
-import com.EduPay.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -25,20 +29,54 @@ import java.util.stream.Collectors;
 @Service
 public class StudentService {
 
+    private static final Logger log = LoggerFactory.getLogger(StudentService.class);
+
     private final StudentRepository studentRepository;
     private final FeeRepository feeRepository;
     private final AnnouncementRepository announcementRepository;
     private final PaymentRepository paymentRepository;
-    private final UserRepository userRepository; // To find the student's associated User entity
+    private final CurrentUserResolver currentUserResolver; // Current student, resolved once per request
 
     public StudentService(StudentRepository studentRepository, FeeRepository feeRepository,
                           AnnouncementRepository announcementRepository, PaymentRepository paymentRepository,
-                          UserRepository userRepository) {
+                          CurrentUserResolver currentUserResolver) {
         this.studentRepository = studentRepository;
         this.feeRepository = feeRepository;
         this.announcementRepository = announcementRepository;
         this.paymentRepository = paymentRepository;
-        this.userRepository = userRepository;
+        this.currentUserResolver = currentUserResolver;
+    }
+
+    /**
+     * Links students created before students.user_id existed to their login
+     * accounts (by student id, then by unambiguous name). No-op once every
+     * linkable student is linked.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void linkStudentAccounts() {
+        int linked = studentRepository.linkAccountsByStudentId() + studentRepository.linkAccountsByName();
+        if (linked > 0) {
+            log.info("🔗 Linked {} students to their user accounts", linked);
+        }
+    }
+
+    /**
+     * Profile of the currently authenticated student; the app needs the standard
+     * to subscribe to its class announcement topic.
+     *
+     * @throws RuntimeException if the student's user account is not linked to a student profile.
+     */
+    public StudentDto getCurrentStudentProfile() {
+        Student student = currentUserResolver.requireStudent();
+        return new StudentDto(
+                student.getId(),
+                student.getStudentId(),
+                student.getName(),
+                student.getRollNo(),
+                student.getMobileNo(),
+                student.getStandard()
+        );
     }
 
     /**
@@ -48,20 +86,7 @@ public class StudentService {
      * @throws RuntimeException if the student's user account is not linked to a student profile.
      */
     public List<FeeDto> getFeesForCurrentStudent() {
-        // In a real app, get current user's ID from Spring Security context
-        Long currentUserId = 2L; // Placeholder: Replace with actual student User ID from security context
-
-        // Find the Student entity linked to this User
-        // Assuming a OneToOne relationship between User (role STUDENT) and Student entity
-        User studentUser = userRepository.findById(currentUserId)
-                .orElseThrow(() -> new RuntimeException("Student user not found with ID: " + currentUserId));
-
-        // Assuming student's username (name) is used to find the corresponding Student entity
-        // Note: The StudentRepository.findByName method is needed for this to work.
-        // If not already present, you'll need to add: Optional<Student> findByName(String name); to StudentRepository.java
-        Student student = studentRepository.findByName(studentUser.getUsername())
-                .orElseThrow(() -> new RuntimeException("Student profile not found for user: " + studentUser.getUsername()));
-
+        Student student = currentUserResolver.requireStudent();
 
         List<Fee> fees = feeRepository.findByStudentId(student.getId());
         return fees.stream()
@@ -91,17 +116,7 @@ public class StudentService {
      * @throws RuntimeException if the student's user account is not linked to a student profile.
      */
     public List<PaymentHistoryDto> getPaymentHistoryForCurrentStudent() {
-        // In a real app, get current user's ID from Spring Security context
-        Long currentUserId = 2L; // Placeholder: Replace with actual student User ID from security context
-
-        User studentUser = userRepository.findById(currentUserId)
-                .orElseThrow(() -> new RuntimeException("Student user not found with ID: " + currentUserId));
-
-        // Assuming student's username (name) is used to find the corresponding Student entity
-        // Note: The StudentRepository.findByName method is needed for this to work.
-        // If not already present, you'll need to add: Optional<Student> findByName(String name); to StudentRepository.java
-        Student student = studentRepository.findByName(studentUser.getUsername())
-                .orElseThrow(() -> new RuntimeException("Student profile not found for user: " + studentUser.getUsername()));
+        Student student = currentUserResolver.requireStudent();
 
         List<Payment> payments = paymentRepository.findByStudentId(student.getId());
         return payments.stream()
@@ -0,0 +1,167 @@
+package com.EduPay.service;
+
+import com.EduPay.config.WebSocketConfig;
+import com.EduPay.repository.AnnouncementRepository;
+import com.EduPay.repository.NotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory unread counters backing GET /api/notifications/unread.
+ *
+ * Counters are rebuilt from the database at startup with two GROUP BY queries
+ * (personal notifications + audience announcements) and then kept current
+ * incrementally: notification saves and broadcasts increment, read marks
+ * decrement. A user missing from the map (e.g. after {@link #invalidateAll()})
+ * is loaded once from InboxService on the next read.
+ *
+ * A counter loaded between a write's commit and its delta would count the
+ * change twice. So every writer takes a {@link #mark()} before it commits, and
+ * a delta is only applied to counters whose load finished before that mark;
+ * any other counter may already contain the change and is reloaded (or, for
+ * silent broadcast updates, evicted) instead.
+ *
+ * Every change for a single user is pushed as { "count": n } on
+ * /topic/unread/{userId}. Audience broadcasts update counters silently —
+ * subscribers already receive the shared announcement frame and bump locally.
+ */
+@Service
+public class UnreadCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(UnreadCounterService.class);
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Unread count plus the sequence value stamped when its load finished. */
+    private record Counter(AtomicLong count, long loadedAt, String role) {
+    }
+
+    private final NotificationRepository notificationRepository;
+    private final AnnouncementRepository announcementRepository;
+    private final InboxService inboxService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public UnreadCounterService(NotificationRepository notificationRepository,
+                                AnnouncementRepository announcementRepository,
+                                InboxService inboxService,
+                                SimpMessagingTemplate messagingTemplate) {
+        this.notificationRepository = notificationRepository;
+        this.announcementRepository = announcementRepository;
+        this.inboxService = inboxService;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Rebuilds every counter from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        Map<Long, Long> totals = new HashMap<>();
+        for (Object[] row : notificationRepository.countUnreadGroupedByUser()) {
+            totals.merge(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), Long::sum);
+        }
+        for (Object[] row : announcementRepository.countUnreadGroupedByStudentUser()) {
+            totals.merge(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), Long::sum);
+        }
+
+        long loadedAt = sequence.incrementAndGet();
+        counters.clear();
+        // Role is only needed to reload a counter; rebuilt entries reload through get() after eviction
+        totals.forEach((userId, count) -> counters.put(userId, new Counter(new AtomicLong(count), loadedAt, null)));
+        log.info("🔔 Unread counters rebuilt for {} users in {} ms",
+                counters.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Current unread count, loading it from the inbox on a cache miss.
+     */
+    public long get(Long userId, String role) {
+        return counters.computeIfAbsent(userId, id -> load(id, role)).count().get();
+    }
+
+    /**
+     * Sequence point for a write: take it before the write commits and pass it
+     * to the matching increment / decrement.
+     */
+    public long mark() {
+        return sequence.incrementAndGet();
+    }
+
+    private Counter load(Long userId, String role) {
+        long count = inboxService.getUnreadCount(userId, role);
+        return new Counter(new AtomicLong(count), sequence.incrementAndGet(), role);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Incremental updates
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** One new unread item for the user, committed after {@code mark}; pushes the new count. */
+    public void increment(Long userId, long mark) {
+        adjust(userId, 1, mark, true);
+    }
+
+    /** One item read by the user, committed after {@code mark}; pushes the new count. */
+    public void decrement(Long userId, long mark) {
+        adjust(userId, -1, mark, true);
+    }
+
+    /** Several items read at once (bulk read receipts); pushes the new count once. */
+    public void decrement(Long userId, long by, long mark) {
+        if (by > 0) {
+            adjust(userId, -by, mark, true);
+        }
+    }
+
+    /** One new unread item for each recipient of an audience broadcast, without pushes. */
+    public void incrementAll(Collection<Long> userIds, long mark) {
+        for (Long userId : userIds) {
+            adjust(userId, 1, mark, false);
+        }
+    }
+
+    /**
+     * Drops all counters so they reload lazily — used when a change (e.g. an
+     * announcement deleted or created outside a broadcast) can't be attributed
+     * to individual users cheaply.
+     */
+    public void invalidateAll() {
+        counters.clear();
+    }
+
+    private void adjust(Long userId, long delta, long mark, boolean push) {
+        // Users not yet loaded pick the change up from the database on first read.
+        // computeIfPresent also waits for a load of this user that is still running.
+        boolean[] reloaded = new boolean[1];
+        Counter counter = counters.computeIfPresent(userId, (id, c) -> {
+            if (c.loadedAt() < mark) {
+                return c; // loaded before the write committed: the delta is still missing
+            }
+            if (!push || c.role() == null) {
+                return null; // may already include the change: evict, reload on next read
+            }
+            reloaded[0] = true;
+            return load(id, c.role());
+        });
+        if (counter == null) {
+            return;
+        }
+        long count = reloaded[0] ? counter.count().get()
+                : counter.count().updateAndGet(c -> Math.max(0, c + delta));
+        if (push) {
+            messagingTemplate.convertAndSend(WebSocketConfig.unreadTopic(userId), Map.of("count", count));
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.EduPay.util;
 
+import com.EduPay.config.CustomUserDetails;
+import com.EduPay.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -16,6 +20,12 @@ import java.util.function.Function;
 @Component // Marks this class as a Spring component, so it can be injected
 public class JwtUtil {
 
+    // Identity claims: enough to build the principal without a user query
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_STUDENT_PK = "sid";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
     // Secret key for signing JWTs. Loaded from application.properties (or similar config).
     // It's crucial to keep this key secure and not hardcode it in production.
     @Value("${jwt.secret}")
@@ -25,17 +35,55 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration; // e.g., 3600000 for 1 hour
 
-    // Corrected: Return type should be SecretKey, not String
-    private SecretKey getSigningKey() {
-        // Generates a secure key from the secret string.
+    // HMAC key and parser are immutable and thread-safe: derived once from the secret at startup
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
         // Ensure the secret string is long enough and securely generated.
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+    }
+
+    private SecretKey getSigningKey() {
+        return signingKey;
     }
 
-    public String generateToken(String username, String role) {
+    /**
+     * Token carrying the user's id, role, linked student (students.id, may be null)
+     * and current token version.
+     */
+    public String generateToken(User user, Long studentPk) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("role", role); // Add role as a custom claim
-        return createToken(claims, username);
+        claims.put(CLAIM_ROLE, user.getRole());
+        claims.put(CLAIM_USER_ID, user.getId());
+        if (studentPk != null) {
+            claims.put(CLAIM_STUDENT_PK, studentPk);
+        }
+        claims.put(CLAIM_TOKEN_VERSION, user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+        return createToken(claims, user.getUsername());
+    }
+
+    /**
+     * Principal built from verified claims, or null if the token predates the
+     * identity claims (such tokens must be re-issued by logging in again).
+     */
+    public CustomUserDetails toPrincipal(Claims claims) {
+        Object userId = claims.get(CLAIM_USER_ID);
+        if (!(userId instanceof Number)) {
+            return null;
+        }
+        Object studentPk = claims.get(CLAIM_STUDENT_PK);
+        return new CustomUserDetails(((Number) userId).longValue(), claims.getSubject(),
+                claims.get(CLAIM_ROLE, String.class),
+                studentPk instanceof Number n ? n.longValue() : null);
+    }
+
+    /** Token version claim; 0 when absent. */
+    public int extractTokenVersion(Claims claims) {
+        Object version = claims.get(CLAIM_TOKEN_VERSION);
+        return version instanceof Number n ? n.intValue() : 0;
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
@@ -61,25 +109,26 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-    // Corrected: Use Jwts.parserBuilder() for parsing tokens
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSigningKey()) // Set the signing key for parsing
-                .build() // Build the parser
-                .parseClaimsJws(token) // Parse the token
-                .getBody(); // Get the claims body
+    /**
+     * Verifies the signature and expiry and returns the claims — the single parse
+     * the authentication filter does per request.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, tampered with or expired
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Claims extractAllClaims(String token) {
+        return parseClaims(token);
     }
 
     public Boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token); // parsed once for both checks
+        return (claims.getSubject().equals(username) && !claims.getExpiration().before(new Date()));
     }
 
     public String extractRole(String token) {
-        return extractClaim(token, claims -> claims.get("role", String.class));
+        return extractClaim(token, claims -> claims.get(CLAIM_ROLE, String.class));
     }
 }
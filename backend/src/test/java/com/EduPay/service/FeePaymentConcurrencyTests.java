@@ -0,0 +1,124 @@
+package com.EduPay.service;
+
+import com.EduPay.model.Fee;
+import com.EduPay.model.Student;
+import com.EduPay.model.User;
+import com.EduPay.repository.FeeRepository;
+import com.EduPay.repository.StudentBalanceRepository;
+import com.EduPay.repository.StudentRepository;
+import com.EduPay.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Hundreds of parallel payments against one fee: every accepted payment must be
+ * reflected in the fee and the balance projection, and none may push the fee
+ * below zero outstanding.
+ */
+@SpringBootTest
+class FeePaymentConcurrencyTests {
+
+    private static final int FEE_AMOUNT = 300;
+    private static final int PAYMENTS = 400; // 100 more than the fee can absorb
+
+    @Autowired private FeePaymentService feePaymentService;
+    @Autowired private FeeRepository feeRepository;
+    @Autowired private StudentRepository studentRepository;
+    @Autowired private StudentBalanceRepository studentBalanceRepository;
+    @Autowired private StudentBalanceService studentBalanceService;
+    @Autowired private UserRepository userRepository;
+
+    private User admin;
+    private Student student;
+    private Fee fee;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        admin = new User();
+        admin.setUsername("concurrency-admin-" + suffix);
+        admin.setPassword("n/a");
+        admin.setRole("ADMIN");
+        admin = userRepository.save(admin);
+
+        student = new Student();
+        student.setStudentId("CONC-" + suffix);
+        student.setName("Concurrency " + suffix);
+        student.setRollNo("CONC-" + suffix);
+        student.setMobileNo("0000000000");
+        student.setStandard("TEST");
+        student.setAdmin(admin);
+        student = studentRepository.save(student);
+
+        fee = new Fee();
+        fee.setFeeType("Tuition Fee");
+        fee.setAmount((double) FEE_AMOUNT);
+        fee.setAmountPaid(0.0);
+        fee.setOutstandingAmount((double) FEE_AMOUNT);
+        fee.setDueDate(LocalDate.now().plusDays(30));
+        fee.setStatus("Pending");
+        fee.setStudent(student);
+        fee = feeRepository.save(fee);
+        studentBalanceService.onFeeAdded(student.getId(), fee.getAmount(), fee.getDueDate());
+    }
+
+    @AfterEach
+    void tearDown() {
+        studentBalanceRepository.deleteById(student.getId());
+        feeRepository.deleteById(fee.getId());
+        studentRepository.deleteById(student.getId());
+        userRepository.deleteById(admin.getId());
+    }
+
+    @Test
+    void parallelPaymentsAreNeitherLostNorOverApplied() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < PAYMENTS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    feePaymentService.inTransaction(
+                            () -> feePaymentService.applyPayment(student.getId(), fee.getId(), 1.0));
+                    accepted.incrementAndGet();
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Fee stored = feeRepository.findById(fee.getId()).orElseThrow();
+        assertEquals(FEE_AMOUNT, accepted.get());
+        assertEquals(PAYMENTS - FEE_AMOUNT, rejected.get());
+        assertEquals(FEE_AMOUNT, stored.getAmountPaid(), 0.0001);
+        assertEquals(0.0, stored.getOutstandingAmount(), 0.0001);
+        assertEquals("Paid", stored.getStatus());
+        assertEquals(FEE_AMOUNT, studentBalanceService.getBalance(student.getId()).getTotalPaid(), 0.0001);
+    }
+}
@@ -0,0 +1,117 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.PaymentCallback;
+import com.EduPay.model.PaymentCallbackEvent;
+import com.EduPay.repository.PaymentCallbackEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Callback ingestion and retry scheduling, with the queue table and the
+ * transaction manager stubbed out (no database).
+ */
+class PaymentCallbackProcessorTests {
+
+    private final PaymentCallbackEventRepository repository = mock(PaymentCallbackEventRepository.class);
+    private final PaymentService paymentService = mock(PaymentService.class);
+
+    private PaymentCallbackProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new PaymentCallbackProcessor(repository, paymentService,
+                mock(PlatformTransactionManager.class), 1, 500);
+        ReflectionTestUtils.setField(processor, "batchSize", 50);
+        ReflectionTestUtils.setField(processor, "maxAttempts", 5);
+        ReflectionTestUtils.setField(processor, "retryBackoffMillis", 5000L);
+        ReflectionTestUtils.setField(processor, "retryMaxBackoffMillis", 300000L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.shutdown();
+    }
+
+    @Test
+    void duplicateCallbackIsAcceptedOnce() {
+        PaymentCallback callback = new PaymentCallback("pay_1", "order_1", "sig", "success", null);
+        when(repository.enqueue(eq("pay_1"), any(), any(), any(), any(), any(), any())).thenReturn(1, 0);
+
+        assertTrue(processor.ingest(callback));
+        assertFalse(processor.ingest(callback));
+
+        assertEquals(1L, processor.metrics().get("received"));
+        assertEquals(1L, processor.metrics().get("duplicates"));
+    }
+
+    @Test
+    void dedupKeyFallsBackToOrderAndStatus() {
+        assertEquals("pay_1", PaymentCallbackProcessor.dedupKey(
+                new PaymentCallback("pay_1", "order_1", null, "success", null)));
+        assertEquals("order:order_1:failed", PaymentCallbackProcessor.dedupKey(
+                new PaymentCallback(null, "order_1", null, "failed", "declined")));
+        assertThrows(RuntimeException.class, () -> PaymentCallbackProcessor.dedupKey(
+                new PaymentCallback(" ", null, null, "success", null)));
+    }
+
+    @Test
+    void retryBackoffDoublesUpToTheCap() {
+        assertEquals(Duration.ofSeconds(5), processor.retryBackoff(1));
+        assertEquals(Duration.ofSeconds(10), processor.retryBackoff(2));
+        assertEquals(Duration.ofSeconds(40), processor.retryBackoff(4));
+        assertEquals(Duration.ofMinutes(5), processor.retryBackoff(10));
+        assertEquals(Duration.ofMinutes(5), processor.retryBackoff(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void failedApplicationIsRequeuedWithBackoff() {
+        PaymentCallbackEvent event = new PaymentCallbackEvent();
+        event.setId(42L);
+        event.setDedupKey("pay_42");
+        event.setGatewayPaymentId("pay_42");
+        event.setGatewayOrderId("order_42");
+        event.setGatewayStatus("success");
+        event.setState("PROCESSING");
+        event.setAttempts(0);
+        event.setReceivedAt(LocalDateTime.now());
+
+        when(repository.enqueue(any(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+        when(repository.claimBatch(anyInt(), any(), any())).thenReturn(List.of(42L), List.of());
+        when(repository.findById(42L)).thenReturn(Optional.of(event));
+        when(paymentService.handlePaymentGatewayCallback(any(), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("could not obtain lock"));
+
+        LocalDateTime before = LocalDateTime.now();
+        processor.ingest(new PaymentCallback("pay_42", "order_42", null, "success", null));
+
+        ArgumentCaptor<PaymentCallbackEvent> saved = ArgumentCaptor.forClass(PaymentCallbackEvent.class);
+        verify(repository, timeout(5000)).save(saved.capture());
+        PaymentCallbackEvent requeued = saved.getValue();
+        assertEquals("QUEUED", requeued.getState());
+        assertEquals(1, requeued.getAttempts());
+        assertEquals("could not obtain lock", requeued.getLastError());
+        // Not due again before the first backoff step has passed
+        assertFalse(requeued.getNextAttemptAt().isBefore(before.plusSeconds(5)));
+    }
+}
@@ -0,0 +1,212 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.PaymentCallback;
+import com.EduPay.exception.PaymentRejectedException;
+import com.EduPay.model.Fee;
+import com.EduPay.model.Payment;
+import com.EduPay.model.PaymentOrder;
+import com.EduPay.model.Student;
+import com.EduPay.repository.FeeRepository;
+import com.EduPay.repository.PaymentOrderRepository;
+import com.EduPay.repository.PaymentRepository;
+import com.EduPay.repository.StudentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Gateway callbacks against one order placed with the in-process FakePaymentGateway.
+ *
+ * The order row lives in memory; the repository's conditional UPDATEs
+ * (settlePaid / settleFailed) are stubbed with the same WHERE clauses as their SQL.
+ */
+class PaymentCallbackSettlementTests {
+
+    private static final long STUDENT_PK = 7L;
+    private static final long FEE_ID = 11L;
+    private static final long ORDER_PK = 1L;
+
+    private final FakePaymentGateway gateway = new FakePaymentGateway();
+    private final PaymentOrderRepository paymentOrderRepository = mock(PaymentOrderRepository.class);
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final FeeRepository feeRepository = mock(FeeRepository.class);
+    private final FeePaymentService feePaymentService = mock(FeePaymentService.class);
+
+    private PaymentService paymentService;
+    private PaymentOrder row;        // what payment_orders holds for the order
+    private String gatewayOrderId;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = new PaymentService(paymentRepository, studentRepository, feeRepository,
+                mock(CurrentUserResolver.class), feePaymentService, paymentOrderRepository, gateway);
+
+        Student student = new Student();
+        student.setId(STUDENT_PK);
+        Fee fee = new Fee();
+        fee.setId(FEE_ID);
+        fee.setAmount(500.0);
+        fee.setOutstandingAmount(500.0);
+        fee.setStudent(student);
+
+        when(studentRepository.existsById(STUDENT_PK)).thenReturn(true);
+        when(studentRepository.getReferenceById(STUDENT_PK)).thenReturn(student);
+        when(feeRepository.findById(FEE_ID)).thenReturn(Optional.of(fee));
+        when(paymentOrderRepository.save(any(PaymentOrder.class))).thenAnswer(inv -> {
+            row = inv.getArgument(0);
+            row.setId(ORDER_PK);
+            return row;
+        });
+        when(paymentOrderRepository.findByGatewayOrderId(any())).thenAnswer(inv ->
+                inv.getArgument(0).equals(row.getGatewayOrderId()) ? Optional.of(copy(row)) : Optional.empty());
+        when(paymentOrderRepository.settlePaid(eq(ORDER_PK), any(), any())).thenAnswer(inv -> {
+            if (!List.of("CREATED", "FAILED", "EXPIRED").contains(row.getStatus())) {
+                return 0;
+            }
+            row.setStatus("PAID");
+            row.setGatewayPaymentId(inv.getArgument(1));
+            return 1;
+        });
+        when(paymentOrderRepository.settleFailed(eq(ORDER_PK), any(), any())).thenAnswer(inv -> {
+            if (!"CREATED".equals(row.getStatus())) {
+                return 0;
+            }
+            row.setStatus("FAILED");
+            row.setGatewayPaymentId(inv.getArgument(1));
+            return 1;
+        });
+        when(paymentOrderRepository.findSettlement(ORDER_PK)).thenAnswer(inv -> {
+            List<Object[]> settlement = new ArrayList<>();
+            settlement.add(new Object[]{row.getStatus(), row.getGatewayPaymentId()});
+            return settlement;
+        });
+
+        gatewayOrderId = (String) paymentService
+                .createPaymentOrder(STUDENT_PK, FEE_ID, null, "INR", "Tuition").get("orderId");
+    }
+
+    @Test
+    void duplicateSuccessCallbackIsAppliedOnce() {
+        PaymentCallback paid = gateway.complete(gatewayOrderId, true);
+
+        assertEquals("APPLIED", handle(paid).state());
+        assertEquals("IGNORED", handle(paid).state());
+
+        assertEquals("PAID", row.getStatus());
+        verify(feePaymentService, times(1)).applyPayment(STUDENT_PK, FEE_ID, 500.0);
+        assertEquals(List.of("Success"), savedPaymentStatuses());
+    }
+
+    @Test
+    void successAfterFailedOrderIsApplied() {
+        assertEquals("APPLIED", handle(gateway.complete(gatewayOrderId, false)).state());
+        assertEquals("FAILED", row.getStatus());
+
+        PaymentCallback retried = gateway.complete(gatewayOrderId, true);
+        assertEquals("APPLIED", handle(retried).state());
+
+        assertEquals("PAID", row.getStatus());
+        assertEquals(retried.getRazorpayPaymentId(), row.getGatewayPaymentId());
+        verify(feePaymentService, times(1)).applyPayment(STUDENT_PK, FEE_ID, 500.0);
+        assertEquals(List.of("Failed", "Success"), savedPaymentStatuses());
+    }
+
+    @Test
+    void successAfterExpiredOrderIsApplied() {
+        row.setStatus("EXPIRED"); // reconciliation gave up on it
+        row.setCompletedAt(LocalDateTime.now());
+
+        assertEquals("APPLIED", handle(gateway.complete(gatewayOrderId, true)).state());
+
+        assertEquals("PAID", row.getStatus());
+        verify(feePaymentService, times(1)).applyPayment(STUDENT_PK, FEE_ID, 500.0);
+    }
+
+    @Test
+    void failureAfterPaidOrderIsIgnored() {
+        handle(gateway.complete(gatewayOrderId, true));
+
+        assertEquals("IGNORED", handle(gateway.complete(gatewayOrderId, false)).state());
+        assertEquals("PAID", row.getStatus());
+    }
+
+    @Test
+    void secondPaymentOnPaidOrderIsParked() {
+        PaymentCallback first = gateway.complete(gatewayOrderId, true);
+        PaymentCallback second = gateway.complete(gatewayOrderId, true); // different gateway payment id
+
+        assertEquals("APPLIED", handle(first).state());
+        PaymentService.CallbackOutcome outcome = handle(second);
+
+        assertEquals("PARKED", outcome.state());
+        assertTrue(outcome.note().contains(second.getRazorpayPaymentId()));
+        assertEquals(first.getRazorpayPaymentId(), row.getGatewayPaymentId());
+        verify(feePaymentService, times(1)).applyPayment(anyLong(), anyLong(), anyDouble());
+        assertEquals(List.of("Success", "Unapplied"), savedPaymentStatuses());
+    }
+
+    @Test
+    void paymentRejectedByTheFeeIsParkedAndOrderStaysPaid() {
+        when(feePaymentService.applyPayment(STUDENT_PK, FEE_ID, 500.0))
+                .thenThrow(new PaymentRejectedException("Payment exceeds the outstanding amount."));
+
+        PaymentService.CallbackOutcome outcome = handle(gateway.complete(gatewayOrderId, true));
+
+        assertEquals("PARKED", outcome.state());
+        assertEquals("PAID", row.getStatus());
+        assertEquals(List.of("Unapplied"), savedPaymentStatuses());
+    }
+
+    @Test
+    void unknownOrderIsRejectedForRetry() {
+        PaymentCallback stray = new PaymentCallback("pay_x", "order_unknown", null, "success", null);
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> handle(stray));
+
+        assertTrue(error.getMessage().contains("order_unknown"));
+        verify(feePaymentService, never()).applyPayment(anyLong(), anyLong(), anyDouble());
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Helpers
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private PaymentService.CallbackOutcome handle(PaymentCallback callback) {
+        return paymentService.handlePaymentGatewayCallback(callback.getRazorpayPaymentId(),
+                callback.getRazorpayOrderId(), callback.getRazorpaySignature(),
+                callback.getStatus(), callback.getErrorMessage());
+    }
+
+    private List<String> savedPaymentStatuses() {
+        ArgumentCaptor<Payment> saved = ArgumentCaptor.forClass(Payment.class);
+        verify(paymentRepository, atLeastOnce()).save(saved.capture());
+        return saved.getAllValues().stream().map(Payment::getStatus).toList();
+    }
+
+    /** The entity as loaded by a fresh transaction (the service must not see later row changes through it). */
+    private static PaymentOrder copy(PaymentOrder o) {
+        return new PaymentOrder(o.getId(), o.getGatewayOrderId(), o.getStudentPk(), o.getFeeId(), o.getAmount(),
+                o.getCurrency(), o.getDescription(), o.getStatus(), o.getGatewayPaymentId(),
+                o.getCreatedAt(), o.getCompletedAt(), o.getReconcileFailures(), o.getLastReconcileError());
+    }
+}
@@ -0,0 +1,155 @@
+package com.EduPay.service;
+
+import com.EduPay.dto.PaymentCallback;
+import com.EduPay.model.PaymentOrder;
+import com.EduPay.repository.PaymentOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * One reconciliation pass over stale CREATED orders, answered by a stub gateway:
+ * paid, failed, still unpaid (young and past expiry) and unreachable (young and past expiry).
+ */
+class PaymentReconciliationServiceTests {
+
+    private final PaymentOrderRepository paymentOrderRepository = mock(PaymentOrderRepository.class);
+    private final PaymentCallbackProcessor paymentCallbackProcessor = mock(PaymentCallbackProcessor.class);
+
+    private PaymentReconciliationService reconciliationService;
+
+    /** Gateway-side state per order id; "error" makes the lookup throw. */
+    private final Map<String, String> gatewayStates = Map.of(
+            "order_paid", "paid",
+            "order_failed", "failed",
+            "order_pending", "created",
+            "order_abandoned", "created",
+            "order_unreachable", "error",
+            "order_lost", "error");
+
+    private final PaymentGatewayClient stubGateway = new PaymentGatewayClient() {
+        @Override
+        public GatewayOrder createOrder(Double amount, String currency, String receipt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public GatewayOrderStatus fetchOrderStatus(String orderId) {
+            String state = gatewayStates.get(orderId);
+            if ("error".equals(state)) {
+                throw new RuntimeException("gateway timeout for " + orderId);
+            }
+            return new GatewayOrderStatus(orderId, state, "paid".equals(state) ? "pay_" + orderId : null);
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        reconciliationService = new PaymentReconciliationService(paymentOrderRepository, stubGateway,
+                paymentCallbackProcessor, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(reconciliationService, "batchSize", 500);
+        ReflectionTestUtils.setField(reconciliationService, "staleMinutes", 15L);
+        ReflectionTestUtils.setField(reconciliationService, "expiryMinutes", 1440L);
+        ReflectionTestUtils.setField(reconciliationService, "maxConcurrentGatewayCalls", 4);
+
+        LocalDateTime hourAgo = LocalDateTime.now().minusHours(1);
+        LocalDateTime twoDaysAgo = LocalDateTime.now().minusDays(2);
+        when(paymentOrderRepository.findByStatusAndCreatedAtBeforeAndIdGreaterThanOrderByIdAsc(
+                eq("CREATED"), any(), eq(0L), any()))
+                .thenReturn(List.of(
+                        order(1L, "order_paid", hourAgo),
+                        order(2L, "order_failed", hourAgo),
+                        order(3L, "order_pending", hourAgo),
+                        order(4L, "order_abandoned", twoDaysAgo),
+                        order(5L, "order_unreachable", hourAgo),
+                        order(6L, "order_lost", twoDaysAgo)));
+        when(paymentOrderRepository.settleAll(any(), any(), any()))
+                .thenAnswer(inv -> ((Collection<?>) inv.getArgument(0)).size());
+        when(paymentCallbackProcessor.ingest(any())).thenReturn(true);
+    }
+
+    @Test
+    void passSettlesEveryOutcome() {
+        Map<String, Object> report = reconciliationService.reconcile();
+
+        assertEquals(6, report.get("scanned"));
+        assertEquals(1, report.get("paid"));
+        assertEquals(1, report.get("failed"));
+        assertEquals(1, report.get("expired"));
+        assertEquals(1, report.get("stillPending"));
+        assertEquals(2, report.get("errors"));
+        assertEquals(1, report.get("expiredUnverified"));
+
+        verify(paymentOrderRepository).settleAll(eq(List.of(2L)), eq("FAILED"), any());
+        verify(paymentOrderRepository).settleAll(eq(List.of(4L)), eq("EXPIRED"), any());
+        verify(paymentOrderRepository).settleAll(eq(List.of(6L)), eq("EXPIRED"), any());
+    }
+
+    @Test
+    void paidOrderGoesThroughTheCallbackQueue() {
+        reconciliationService.reconcile();
+
+        ArgumentCaptor<PaymentCallback> queued = ArgumentCaptor.forClass(PaymentCallback.class);
+        verify(paymentCallbackProcessor).ingest(queued.capture());
+        assertEquals("pay_order_paid", queued.getValue().getRazorpayPaymentId());
+        assertEquals("order_paid", queued.getValue().getRazorpayOrderId());
+        assertEquals("success", queued.getValue().getStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedLookupsAreRecordedAndOverdueOnesReported() {
+        Map<String, Object> report = reconciliationService.reconcile();
+
+        verify(paymentOrderRepository).recordReconcileFailure(5L, "gateway timeout for order_unreachable");
+        verify(paymentOrderRepository).recordReconcileFailure(6L, "gateway timeout for order_lost");
+        verify(paymentOrderRepository, never()).settleAll(eq(List.of(5L)), any(), any());
+
+        List<Map<String, Object>> unverified = (List<Map<String, Object>>) report.get("expiredUnverifiedOrders");
+        assertEquals(1, unverified.size());
+        assertEquals("order_lost", unverified.get(0).get("orderId"));
+        assertEquals(1, unverified.get(0).get("lookupFailures"));
+        assertEquals("gateway timeout for order_lost", unverified.get(0).get("lastError"));
+    }
+
+    @Test
+    void emptyScanProducesAnEmptyReport() {
+        when(paymentOrderRepository.findByStatusAndCreatedAtBeforeAndIdGreaterThanOrderByIdAsc(
+                eq("CREATED"), any(), eq(0L), any())).thenReturn(List.of());
+
+        Map<String, Object> report = reconciliationService.reconcile();
+
+        assertEquals(0, report.get("scanned"));
+        verify(paymentOrderRepository, never()).recordReconcileFailure(anyLong(), any());
+        assertEquals(report, reconciliationService.getLastReport());
+    }
+
+    private static PaymentOrder order(Long id, String gatewayOrderId, LocalDateTime createdAt) {
+        PaymentOrder order = new PaymentOrder();
+        order.setId(id);
+        order.setGatewayOrderId(gatewayOrderId);
+        order.setStudentPk(7L);
+        order.setFeeId(11L);
+        order.setAmount(500.0);
+        order.setCurrency("INR");
+        order.setStatus("CREATED");
+        order.setCreatedAt(createdAt);
+        return order;
+    }
+}
@@ -42,7 +42,9 @@ final financialRecordsProvider =
       headers: {'Authorization': 'Bearer $token'},
     );
     if (res.statusCode == 200) {
-      final list = jsonDecode(res.body) as List;
+      // Paged response: { items, nextCursor, hasMore } — first page only
+      final page = jsonDecode(res.body) as Map<String, dynamic>;
+      final list = page['items'] as List;
       return list
           .map((e) => FinancialRecord.fromJson(e as Map<String, dynamic>))
           .toList();
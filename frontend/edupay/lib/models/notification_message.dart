@@ -3,6 +3,7 @@
 
 class NotificationMessage {
   final int? id;
+  final int? announcementId; // set for audience announcements (no per-user id)
   final String title;
   final String message;
   final String type;
@@ -13,6 +14,7 @@ class NotificationMessage {
 
   NotificationMessage({
     this.id,
+    this.announcementId,
     required this.title,
     required this.message,
     required this.type,
@@ -25,14 +27,16 @@ class NotificationMessage {
   factory NotificationMessage.fromJson(Map<String, dynamic> json) {
     return NotificationMessage(
       id: json['id'] as int?,
+      announcementId: json['announcementId'] as int?,
       title: json['title'] as String? ?? 'Notification',
       message: json['message'] as String? ?? '',
       type: json['type'] as String? ?? 'GENERAL',
       insight: json['insight'] as String?,
       totalOutstanding: (json['totalOutstanding'] as num?)?.toDouble(),
       isRead: json['isRead'] as bool? ?? false,
-      createdAt: json['timestamp'] != null
-          ? DateTime.tryParse(json['timestamp'].toString()) ?? DateTime.now()
+      createdAt: (json['timestamp'] ?? json['createdAt']) != null
+          ? DateTime.tryParse((json['timestamp'] ?? json['createdAt']).toString()) ??
+              DateTime.now()
           : DateTime.now(),
     );
   }
@@ -40,6 +44,7 @@ class NotificationMessage {
   NotificationMessage copyWith({bool? isRead}) {
     return NotificationMessage(
       id: id,
+      announcementId: announcementId,
       title: title,
       message: message,
       type: type,
@@ -4,7 +4,7 @@ import 'dart:convert';
 
 class PaymentRequest {
   final int studentId;
-  final int? feeId; // Optional: if payment is for a specific fee
+  final int? feeId; // Fee being paid — required by the backend to create an order
   final double amount;
   final String currency;
   final String description;
@@ -87,7 +87,7 @@ class _BroadcastScreenState extends ConsumerState<BroadcastScreen>
         body: jsonEncode(body),
       );
 
-      if (res.statusCode == 201) {
+      if (res.statusCode == 201 || res.statusCode == 202) {
         setState(() {
           _successMsg = '✅ Broadcast sent successfully!';
           _titleCtrl.clear();
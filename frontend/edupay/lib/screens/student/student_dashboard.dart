@@ -74,8 +74,17 @@ class _StudentDashboardState extends State<StudentDashboard>
     if (mounted) setState(() {});
   }
 
-  void _connectWebSocket() {
-    _notificationService.connect();
+  Future<void> _connectWebSocket() async {
+    // The class topic carries CLASS broadcasts; without a standard only the
+    // personal and all-students topics are subscribed
+    String? standard;
+    try {
+      standard = (await _studentService.getMyProfile()).standard;
+    } catch (e) {
+      // Profile unavailable: connect without the class topic
+    }
+    if (!mounted) return;
+    _notificationService.connect(standard: standard);
     _notificationService.notificationStream.listen((notification) {
       setState(() {
         _unreadCount++;
@@ -112,19 +121,26 @@ class _StudentDashboardState extends State<StudentDashboard>
     );
   }
 
-  Future<void> _initiatePayment(BuildContext context, double amountToPay) async {
+  // Payment orders are created per fee: the backend requires feeId and
+  // credits the order's amount to that fee when the gateway confirms it.
+  Future<void> _initiatePayment(BuildContext context, Fee fee) async {
     final userId = await TokenManager.getUserId();
     if (userId == null) {
       _showSnackBar('User ID not found. Please log in again.', isError: true);
       return;
     }
+    if (fee.id == null) {
+      _showSnackBar('This fee cannot be paid online.', isError: true);
+      return;
+    }
 
     try {
       final paymentRequest = PaymentRequest(
-        studentId: userId,
-        amount: amountToPay,
+        studentId: fee.studentId ?? userId,
+        feeId: fee.id,
+        amount: fee.outstandingAmount,
         currency: 'INR',
-        description: 'EduPay Fee Payment',
+        description: 'EduPay Fee Payment: ${fee.feeType}',
       );
 
       _showSnackBar('Initiating online payment...');
@@ -268,7 +284,7 @@ class _StudentDashboardState extends State<StudentDashboard>
                     icon: Icons.payment_rounded,
                     title: 'Pay Online',
                     color: AppTheme.accentPurple,
-                    onTap: () => _initiatePayment(context, _totalOutstanding),
+                    onTap: () => _showFeeStatus(context),
                   ),
                 ],
               ),
@@ -491,17 +507,31 @@ class _StudentDashboardState extends State<StudentDashboard>
             children: [
               ...fees.map((fee) => Padding(
                     padding: const EdgeInsets.symmetric(vertical: 4.0),
-                    child: Text(
-                      '${fee.feeType}: ₹${fee.outstandingAmount.toStringAsFixed(2)} due by ${fee.dueDate.toIso8601String().split('T').first} (${fee.status})',
-                      style: TextStyle(
-                        fontWeight: fee.outstandingAmount > 0
-                            ? FontWeight.bold
-                            : FontWeight.normal,
-                        color: fee.outstandingAmount > 0
-                            ? AppTheme.accentOrange
-                            : AppTheme.accentGreen,
-                        fontSize: 13,
-                      ),
+                    child: Row(
+                      children: [
+                        Expanded(
+                          child: Text(
+                            '${fee.feeType}: ₹${fee.outstandingAmount.toStringAsFixed(2)} due by ${fee.dueDate.toIso8601String().split('T').first} (${fee.status})',
+                            style: TextStyle(
+                              fontWeight: fee.outstandingAmount > 0
+                                  ? FontWeight.bold
+                                  : FontWeight.normal,
+                              color: fee.outstandingAmount > 0
+                                  ? AppTheme.accentOrange
+                                  : AppTheme.accentGreen,
+                              fontSize: 13,
+                            ),
+                          ),
+                        ),
+                        if (fee.outstandingAmount > 0 && fee.id != null)
+                          TextButton(
+                            onPressed: () {
+                              Navigator.of(context).pop();
+                              _initiatePayment(context, fee);
+                            },
+                            child: const Text('Pay'),
+                          ),
+                      ],
                     ),
                   )),
               const Divider(color: AppTheme.dividerColor),
@@ -520,14 +550,6 @@ class _StudentDashboardState extends State<StudentDashboard>
               onPressed: () => Navigator.of(context).pop(),
               child: const Text('Close', style: TextStyle(color: AppTheme.textHint)),
             ),
-            if (totalOutstanding > 0)
-              ElevatedButton(
-                onPressed: () {
-                  Navigator.of(context).pop();
-                  _initiatePayment(context, totalOutstanding);
-                },
-                child: const Text('Pay Now'),
-              ),
           ],
         );
       },
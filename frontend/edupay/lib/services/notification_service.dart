@@ -14,15 +14,23 @@ class NotificationWsService {
   final _notificationController =
       StreamController<NotificationMessage>.broadcast();
 
+  final _unreadCountController = StreamController<int>.broadcast();
+
   /// Stream of incoming WebSocket notifications
   Stream<NotificationMessage> get notificationStream =>
       _notificationController.stream;
 
+  /// Stream of server-pushed unread counts for the current user
+  Stream<int> get unreadCountStream => _unreadCountController.stream;
+
   bool _isConnected = false;
   bool get isConnected => _isConnected;
 
-  /// Connect to the WebSocket and subscribe to the user's notification topic
-  Future<void> connect() async {
+  /// Connect to the WebSocket and subscribe to the user's notification topic,
+  /// plus the shared all-students topic and (when known) the class topic.
+  /// Audience frames carry no notification id — the per-user row is picked up
+  /// on the next [getNotifications] call.
+  Future<void> connect({String? standard}) async {
     final token = await TokenManager.getToken();
     final userId = await TokenManager.getUserId();
     if (token == null || userId == null) return;
@@ -46,19 +54,26 @@ class NotificationWsService {
           // Subscribe to user-specific notification topic
           _stompClient?.subscribe(
             destination: '/topic/notifications/$userId',
-            callback: (StompFrame frame) {
-              if (frame.body != null) {
-                try {
-                  final data =
-                      jsonDecode(frame.body!) as Map<String, dynamic>;
-                  final notification = NotificationMessage.fromJson(data);
-                  _notificationController.add(notification);
-                } catch (e) {
-                  // Ignore malformed messages
-                }
-              }
-            },
+            callback: _onFrame,
+          );
+
+          // Unread count updates ({ "count": n })
+          _stompClient?.subscribe(
+            destination: '/topic/unread/$userId',
+            callback: _onUnreadFrame,
+          );
+
+          // Shared audience topics (one frame per broadcast for everyone)
+          _stompClient?.subscribe(
+            destination: '/topic/announcements/all',
+            callback: _onFrame,
           );
+          if (standard != null) {
+            _stompClient?.subscribe(
+              destination: '/topic/announcements/class/$standard',
+              callback: _onFrame,
+            );
+          }
         },
         onDisconnect: (StompFrame frame) {
           _isConnected = false;
@@ -75,6 +90,29 @@ class NotificationWsService {
     _stompClient?.activate();
   }
 
+  void _onFrame(StompFrame frame) {
+    if (frame.body != null) {
+      try {
+        final data = jsonDecode(frame.body!) as Map<String, dynamic>;
+        final notification = NotificationMessage.fromJson(data);
+        _notificationController.add(notification);
+      } catch (e) {
+        // Ignore malformed messages
+      }
+    }
+  }
+
+  void _onUnreadFrame(StompFrame frame) {
+    if (frame.body != null) {
+      try {
+        final data = jsonDecode(frame.body!) as Map<String, dynamic>;
+        _unreadCountController.add((data['count'] as num).toInt());
+      } catch (e) {
+        // Ignore malformed messages
+      }
+    }
+  }
+
   /// Disconnect from WebSocket
   void disconnect() {
     _stompClient?.deactivate();
@@ -85,6 +123,7 @@ class NotificationWsService {
   void dispose() {
     disconnect();
     _notificationController.close();
+    _unreadCountController.close();
   }
 
   // ===== REST API Methods =====
@@ -110,6 +149,34 @@ class NotificationWsService {
     throw Exception('Failed to fetch notifications');
   }
 
+  /// Fetch one page of the inbox feed. Pass the returned `nextCursor`
+  /// back as [cursor] to load the following page (null when exhausted).
+  Future<({List<NotificationMessage> items, String? nextCursor})>
+      getNotificationFeed({String? cursor, int size = 20}) async {
+    final token = await TokenManager.getToken();
+    if (token == null) throw Exception('Not authenticated');
+
+    final url = Uri.parse('${ApiConstants.BASE_URL}/notifications/feed')
+        .replace(queryParameters: {
+      'size': '$size',
+      if (cursor != null) 'cursor': cursor,
+    });
+    final response = await http.get(
+      url,
+      headers: {'Authorization': 'Bearer $token'},
+    );
+
+    if (response.statusCode == 200) {
+      final data = jsonDecode(response.body) as Map<String, dynamic>;
+      final items = (data['items'] as List)
+          .map((json) =>
+              NotificationMessage.fromJson(json as Map<String, dynamic>))
+          .toList();
+      return (items: items, nextCursor: data['nextCursor'] as String?);
+    }
+    throw Exception('Failed to fetch notification feed');
+  }
+
   /// Get unread notification count
   Future<int> getUnreadCount() async {
     final token = await TokenManager.getToken();
@@ -128,6 +195,19 @@ class NotificationWsService {
     return 0;
   }
 
+  /// Mark an audience announcement as read
+  Future<void> markAnnouncementAsRead(int announcementId) async {
+    final token = await TokenManager.getToken();
+    if (token == null) return;
+
+    final url = Uri.parse(
+        '${ApiConstants.BASE_URL}/notifications/announcements/$announcementId/read');
+    await http.put(
+      url,
+      headers: {'Authorization': 'Bearer $token'},
+    );
+  }
+
   /// Mark a notification as read
   Future<void> markAsRead(int notificationId) async {
     final token = await TokenManager.getToken();
@@ -140,4 +220,38 @@ class NotificationWsService {
       headers: {'Authorization': 'Bearer $token'},
     );
   }
+
+  /// Mark the whole inbox (notifications + announcements) as read
+  Future<void> markAllAsRead() async {
+    final token = await TokenManager.getToken();
+    if (token == null) return;
+
+    final url = Uri.parse('${ApiConstants.BASE_URL}/notifications/read-all');
+    await http.put(
+      url,
+      headers: {'Authorization': 'Bearer $token'},
+    );
+  }
+
+  /// Mark a batch of notifications and announcements as read in one request
+  Future<void> markBatchAsRead({
+    List<int> notificationIds = const [],
+    List<int> announcementIds = const [],
+  }) async {
+    final token = await TokenManager.getToken();
+    if (token == null) return;
+
+    final url = Uri.parse('${ApiConstants.BASE_URL}/notifications/read');
+    await http.put(
+      url,
+      headers: {
+        'Authorization': 'Bearer $token',
+        'Content-Type': 'application/json',
+      },
+      body: jsonEncode({
+        'ids': notificationIds,
+        'announcementIds': announcementIds,
+      }),
+    );
+  }
 }
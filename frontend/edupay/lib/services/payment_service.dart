@@ -59,8 +59,9 @@ class PaymentService {
         body: callback.toJson(),
       );
 
-      if (response.statusCode == 200) {
-        return response.body; // Expecting a success message
+      // 202: callback recorded ({"status": "accepted" | "duplicate"}); applied in the background
+      if (response.statusCode == 200 || response.statusCode == 202) {
+        return response.body;
       } else {
         final Map<String, dynamic> errorBody = jsonDecode(response.body);
         throw Exception(errorBody['message'] ?? 'Failed to process payment callback');
@@ -4,6 +4,7 @@ import 'dart:convert';
 import 'package:http/http.dart' as http;
 import 'package:edupay_app/constants/api_constants.dart';
 import 'package:edupay_app/models/fee.dart';
+import 'package:edupay_app/models/student.dart';
 import 'package:edupay_app/models/announcement.dart';
 import 'package:edupay_app/models/payment_history.dart';
 import 'package:edupay_app/utils/token_manager.dart';
@@ -24,6 +25,24 @@ class StudentService {
     };
   }
 
+  // Fetches the profile (incl. class/standard) of the currently authenticated student
+  Future<Student> getMyProfile() async {
+    final url = Uri.parse('$_baseUrl/student/profile');
+    try {
+      final headers = await _getAuthHeaders();
+      final response = await http.get(url, headers: headers);
+
+      if (response.statusCode == 200) {
+        return Student.fromJson(jsonDecode(response.body));
+      } else {
+        final Map<String, dynamic> errorBody = jsonDecode(response.body);
+        throw Exception(errorBody['message'] ?? 'Failed to fetch my profile');
+      }
+    } catch (e) {
+      throw Exception('Failed to fetch my profile: $e');
+    }
+  }
+
   // Fetches all fee records for the currently authenticated student
   Future<List<Fee>> getMyFees() async {
     final url = Uri.parse('$_baseUrl/student/fees');